@@ -0,0 +1,7 @@
+package enums;
+
+public enum SaveMode {
+    SNAPSHOT, // после каждого изменения файл автосохранения перезаписывается целиком
+    JOURNAL, // изменения дописываются в журнал, файл автосохранения остается последним снимком
+    WRITE_BEHIND, // изменение только помечается, снимок перезаписывает фоновый поток, объединяя серии изменений
+}
@@ -0,0 +1,7 @@
+package enums;
+
+public enum SyncMode {
+    EACH, // запись и FileChannel.force после каждой операции
+    GROUP, // операции копятся и сбрасываются на диск одним force раз в несколько миллисекунд
+    OS_BUFFERED, // запись в файл без force, данные на диск сбрасывает операционная система
+}
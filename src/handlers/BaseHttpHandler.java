@@ -2,16 +2,41 @@ package handlers;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
+import enums.TaskStatus;
+import enums.TaskType;
+import exceptions.TaskCreateException;
 import json.LocalDateAdapter;
+import json.TaskTextAdapterFactory;
 import managers.TaskManager;
+import tasks.Task;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
 
 abstract class BaseHttpHandler implements HttpHandler {
+    private static final String BATCH = "batch";
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final List<String> FILTERS = List.of("order", "status", "from", "to"); // переносятся в Link
+
     protected final TaskManager taskManager;
     protected final Gson gson;
 
@@ -19,6 +44,7 @@ abstract class BaseHttpHandler implements HttpHandler {
         this.taskManager = taskManager;
         this.gson = new GsonBuilder()
                 .registerTypeAdapter(LocalDateTime.class, new LocalDateAdapter())
+                .registerTypeAdapterFactory(new TaskTextAdapterFactory())
                 .create();
     }
 
@@ -29,4 +55,171 @@ abstract class BaseHttpHandler implements HttpHandler {
         h.getResponseBody().write(resp);
         h.close();
     }
+
+    // GET списка. Без параметров весь список пишется в ответ потоком, без сборки одной строки JSON.
+    // С limit возвращается страница: ?limit=N&after=ID - по возрастанию id после ID,
+    // ?order=start&limit=N&afterStart=TIME&after=ID - по расписанию этого типа после задачи (TIME, ID).
+    // Если после страницы есть элементы, ссылка на следующую передается в заголовке Link.
+    // ?status=S и ?from=TIME&to=TIME отвечают по вторичным индексам менеджера, параметры можно сочетать;
+    // limit и курсор действуют так же: по статусу - по id, с from/to - по расписанию.
+    // Запросы к индексам читаются страницами не больше MAX_PAGE_SIZE, в том числе без limit
+    protected void listHandler(HttpExchange exchange, TaskType type, IntFunction<Iterator<? extends Task>> byId,
+                               String emptyMessage) throws IOException {
+        Map<String, String> query = queryParams(exchange);
+        boolean byStart = "start".equals(query.get("order"));
+        if (byStart && type == TaskType.EPIC) {
+            sendResponse(exchange, "Ошибка поиска: эпики не входят в расписание", 404);
+            return;
+        }
+        boolean inRange = byStart || query.containsKey("from") || query.containsKey("to");
+        TaskStatus status = query.containsKey("status") ? TaskStatus.valueOf(query.get("status")) : null;
+        int afterId = Integer.parseInt(query.getOrDefault("after", "0"));
+        LocalDateTime afterStart = query.containsKey("afterStart") ? LocalDateTime.parse(query.get("afterStart")) : null;
+        Iterator<? extends Task> items;
+        if (inRange) {
+            LocalDateTime from = query.containsKey("from") ? LocalDateTime.parse(query.get("from")) : LocalDateTime.MIN;
+            LocalDateTime to = query.containsKey("to") ? LocalDateTime.parse(query.get("to")) : LocalDateTime.MAX;
+            items = paged(last -> last == null
+                    ? taskManager.findInRange(type, status, from, to, afterStart, afterId, MAX_PAGE_SIZE)
+                    : taskManager.findInRange(type, status, from, to, last.getTaskStartTime(), last.getId(),
+                    MAX_PAGE_SIZE));
+        } else if (status != null) {
+            items = paged(last -> taskManager.findByStatus(type, status, last == null ? afterId : last.getId(),
+                    MAX_PAGE_SIZE));
+        } else {
+            items = byId.apply(afterId);
+        }
+
+        if (!query.containsKey("limit")) {
+            if (query.isEmpty() && !items.hasNext()) {
+                sendResponse(exchange, emptyMessage, 200);
+            } else {
+                sendStream(exchange, items);
+            }
+            return;
+        }
+        int limit = Math.min(Integer.parseInt(query.get("limit")), MAX_PAGE_SIZE);
+        if (limit < 1) {
+            throw new NumberFormatException("limit должен быть положительным");
+        }
+        List<Task> page = new ArrayList<>(limit);
+        while (page.size() < limit && items.hasNext()) {
+            page.add(items.next());
+        }
+        if (items.hasNext()) {
+            Task last = page.getLast();
+            StringBuilder next = new StringBuilder(exchange.getRequestURI().getPath())
+                    .append("?limit=").append(limit).append("&after=").append(last.getId());
+            for (String filter : FILTERS) {
+                if (query.containsKey(filter)) {
+                    next.append('&').append(filter).append('=')
+                            .append(URLEncoder.encode(query.get(filter), StandardCharsets.UTF_8));
+                }
+            }
+            if (inRange) {
+                next.append("&afterStart=").append(last.getTaskStartTime());
+            }
+            exchange.getResponseHeaders().add("Link", "<" + next + ">; rel=\"next\"");
+        }
+        sendStream(exchange, page.iterator());
+    }
+
+    protected boolean isBatch(String[] uri) {
+        return uri.length >= 3 && BATCH.equals(uri[2]);
+    }
+
+    // пакетные запросы: POST /{путь}/batch - добавление массива задач, POST /{путь}/batch/update -
+    // обновление по id из тела, DELETE /{путь}/batch - удаление по массиву id
+    protected <T> void batchHandler(HttpExchange exchange, String[] uri, Class<T> type, Consumer<List<T>> add,
+                                    Consumer<List<T>> update, Consumer<Collection<Integer>> remove) throws IOException {
+        String body;
+        try (InputStream is = exchange.getRequestBody()) {
+            body = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        if (body.isBlank()) {
+            sendResponse(exchange, "Ошибка пакетной операции: неправильный формат ввода", 404);
+            return;
+        }
+        String route = exchange.getRequestMethod() + " " + (uri.length == 4 ? uri[3] : "");
+        switch (route) {
+            case "POST " -> {
+                add.accept(readList(body, type));
+                sendResponse(exchange, "Пакет добавлен", 201);
+            }
+            case "POST update" -> {
+                update.accept(readList(body, type));
+                sendResponse(exchange, "Пакет обновлен", 201);
+            }
+            case "DELETE " -> {
+                remove.accept(readList(body, Integer.class));
+                sendResponse(exchange, "Пакет удален", 200);
+            }
+            default -> sendResponse(exchange, "Ошибка пакетной операции: неправильный формат ввода", 404);
+        }
+    }
+
+    // массив JSON пишется в тело ответа по одному элементу (chunked), размер ответа заранее не считается
+    private void sendStream(HttpExchange h, Iterator<? extends Task> items) throws IOException {
+        h.getResponseHeaders().add("Content-Type", "application/json;charset=utf-8");
+        h.sendResponseHeaders(200, 0);
+        try (JsonWriter writer = new JsonWriter(new OutputStreamWriter(h.getResponseBody(), StandardCharsets.UTF_8))) {
+            writer.beginArray();
+            while (items.hasNext()) {
+                Task task = items.next();
+                gson.toJson(task, task.getClass(), writer);
+            }
+            writer.endArray();
+        }
+        h.close();
+    }
+
+    // результат запроса к индексам, который менеджер отдает страницами: следующая страница запрашивается
+    // с курсором последней задачи предыдущей (last == null - первая страница), когда предыдущая прочитана
+    private static Iterator<Task> paged(Function<Task, List<Task>> pageAfter) {
+        return new Iterator<>() {
+            private List<Task> page = pageAfter.apply(null);
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                if (index == page.size() && page.size() == MAX_PAGE_SIZE) {
+                    page = pageAfter.apply(page.getLast());
+                    index = 0;
+                }
+                return index < page.size();
+            }
+
+            @Override
+            public Task next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.get(index++);
+            }
+        };
+    }
+
+    protected static Map<String, String> queryParams(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null && !query.isBlank()) {
+            for (String pair : query.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0) {
+                    params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                            URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return params;
+    }
+
+    private <T> List<T> readList(String body, Class<T> type) {
+        @SuppressWarnings("unchecked")
+        List<T> list = (List<T>) gson.fromJson(body, TypeToken.getParameterized(List.class, type).getType());
+        if (list == null || list.contains(null)) {
+            throw new TaskCreateException("Некорректные параметры пакета");
+        }
+        return list;
+    }
 }
@@ -2,6 +2,7 @@ package handlers;
 
 import com.google.gson.JsonSyntaxException;
 import com.sun.net.httpserver.HttpExchange;
+import enums.TaskType;
 import exceptions.OverlapException;
 import exceptions.TaskCreateException;
 import managers.TaskManager;
@@ -11,6 +12,7 @@ import tasks.SubTask;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Optional;
 
@@ -24,13 +26,17 @@ public class EpicsHandler extends BaseHttpHandler {
     public void handle(HttpExchange exchange) throws IOException {
         String[] uri = exchange.getRequestURI().getPath().split("/");
         try {
+            if (isBatch(uri)) {
+                batchHandler(exchange, uri, Epic.class, taskManager::addEpics, taskManager::updateEpics, taskManager::removeEpics);
+                return;
+            }
             switch (exchange.getRequestMethod()) {
                 case "GET" -> epicsGetHandler(exchange, uri);
                 case "POST" -> epicsPostHandler(exchange, uri);
                 case "DELETE" -> epicsDeleteHandler(exchange, uri);
                 default -> sendResponse(exchange, "Неизвестный метод", 405);
             }
-        } catch (IOException | NumberFormatException | JsonSyntaxException e) {
+        } catch (IOException | IllegalArgumentException | JsonSyntaxException | DateTimeParseException e) {
             sendResponse(exchange, "Ошибка ввода: некорректный формат", 404);
         } catch (OverlapException | TaskCreateException e) {
             sendResponse(exchange, e.getMessage(), 406);
@@ -39,17 +45,13 @@ public class EpicsHandler extends BaseHttpHandler {
 
     private void epicsGetHandler(HttpExchange exchange, String[] uri) throws IOException {
         if (uri.length == 2) {
-            List<Epic> epicsList = taskManager.getEpicsList();
-            if (epicsList.isEmpty()) {
-                sendResponse(exchange, "Список эпиков пуст", 200);
-                return;
-            }
-            sendResponse(exchange, gson.toJson(epicsList), 200);
+            listHandler(exchange, TaskType.EPIC, taskManager::epicsAfter, "Список эпиков пуст");
             return;
         }
 
         int taskID = Integer.parseInt(uri[2]);
-        Optional<Epic> optional = taskManager.getEpic(taskID);
+        // в историю попадает только просмотр самого эпика, не списка его подзадач
+        Optional<Epic> optional = uri.length == 3 ? taskManager.getEpic(taskID) : taskManager.peekEpic(taskID);
         if (optional.isEmpty()) {
             sendResponse(exchange, "Ошибка поиска: эпик не найден", 404);
             return;
@@ -95,7 +97,7 @@ public class EpicsHandler extends BaseHttpHandler {
     private void epicsDeleteHandler(HttpExchange exchange, String[] uri) throws IOException {
         if (uri.length == 3) {
             int taskID = Integer.parseInt(uri[2]);
-            Optional<Epic> optional = taskManager.getEpic(taskID);
+            Optional<Epic> optional = taskManager.peekEpic(taskID);
             if (optional.isPresent()) {
                 taskManager.removeEpic(taskID);
                 sendResponse(exchange, "Эпик удален", 200);
@@ -5,9 +5,15 @@ import managers.TaskManager;
 import tasks.Task;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Map;
 
 public class PrioritizedHandler extends BaseHttpHandler {
+    private static final String FREE_SLOT = "free-slot";
 
     public PrioritizedHandler(TaskManager taskManager) {
         super(taskManager);
@@ -16,10 +22,14 @@ public class PrioritizedHandler extends BaseHttpHandler {
     @Override
     public void handle(HttpExchange exchange) throws IOException {
         String[] uri = exchange.getRequestURI().getPath().split("/");
-        if (exchange.getRequestMethod().equals("GET")) {
-            prioritizedGetHandler(exchange, uri);
-        } else {
-            sendResponse(exchange, "Неизвестный метод", 405);
+        try {
+            if (exchange.getRequestMethod().equals("GET")) {
+                prioritizedGetHandler(exchange, uri);
+            } else {
+                sendResponse(exchange, "Неизвестный метод", 405);
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            sendResponse(exchange, "Ошибка ввода: некорректный формат", 404);
         }
     }
 
@@ -31,8 +41,24 @@ public class PrioritizedHandler extends BaseHttpHandler {
             } else {
                 sendResponse(exchange, gson.toJson(prioritized), 200);
             }
+        } else if (uri.length == 3 && uri[2].equals(FREE_SLOT)) {
+            freeSlotGetHandler(exchange);
         } else {
             sendResponse(exchange, "Ошибка запроса", 404);
         }
     }
+
+    // GET /prioritized/free-slot?duration=MINUTES&notBefore=TIME - ближайшее время, на которое задачу
+    // указанной длительности можно добавить без пересечений; без notBefore поиск идет от текущего времени
+    private void freeSlotGetHandler(HttpExchange exchange) throws IOException {
+        Map<String, String> query = queryParams(exchange);
+        if (!query.containsKey("duration")) {
+            sendResponse(exchange, "Ошибка запроса: не указана длительность", 404);
+            return;
+        }
+        Duration duration = Duration.ofMinutes(Long.parseLong(query.get("duration")));
+        LocalDateTime notBefore = query.containsKey("notBefore") ? LocalDateTime.parse(query.get("notBefore"))
+                : LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+        sendResponse(exchange, gson.toJson(taskManager.findFreeSlot(duration, notBefore)), 200);
+    }
 }
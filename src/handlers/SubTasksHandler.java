@@ -2,6 +2,7 @@ package handlers;
 
 import com.google.gson.JsonSyntaxException;
 import com.sun.net.httpserver.HttpExchange;
+import enums.TaskType;
 import exceptions.OverlapException;
 import exceptions.TaskCreateException;
 import managers.TaskManager;
@@ -11,7 +12,7 @@ import tasks.Task;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.util.List;
+import java.time.format.DateTimeParseException;
 import java.util.Optional;
 
 public class SubTasksHandler extends BaseHttpHandler {
@@ -24,13 +25,17 @@ public class SubTasksHandler extends BaseHttpHandler {
     public void handle(HttpExchange exchange) throws IOException {
         String[] uri = exchange.getRequestURI().getPath().split("/");
         try {
+            if (isBatch(uri)) {
+                batchHandler(exchange, uri, SubTask.class, taskManager::addSubTasks, taskManager::updateSubTasks, taskManager::removeSubTasks);
+                return;
+            }
             switch (exchange.getRequestMethod()) {
                 case "GET" -> subTasksGetHandler(exchange, uri);
                 case "POST" -> subTasksPostHandler(exchange, uri);
                 case "DELETE" -> subTasksDeleteHandler(exchange, uri);
                 default -> sendResponse(exchange, "Неизвестный метод", 405);
             }
-        } catch (IOException | NumberFormatException | JsonSyntaxException e) {
+        } catch (IOException | IllegalArgumentException | JsonSyntaxException | DateTimeParseException e) {
             sendResponse(exchange, "Ошибка ввода: некорректный формат", 404);
         } catch (OverlapException | TaskCreateException e) {
             sendResponse(exchange, e.getMessage(), 406);
@@ -40,12 +45,7 @@ public class SubTasksHandler extends BaseHttpHandler {
     private void subTasksGetHandler(HttpExchange exchange, String[] uri) throws IOException {
         switch (uri.length) {
             case 2:
-                List<SubTask> subTasksList = taskManager.getSubTasksList();
-                if (subTasksList.isEmpty()) {
-                    sendResponse(exchange, "Список подзадач пуст", 200);
-                    return;
-                }
-                sendResponse(exchange, gson.toJson(subTasksList), 200);
+                listHandler(exchange, TaskType.SUBTASK, taskManager::subTasksAfter, "Список подзадач пуст");
                 break;
             case 3:
                 int taskID = Integer.parseInt(uri[2]);
@@ -78,7 +78,7 @@ public class SubTasksHandler extends BaseHttpHandler {
                     break;
                 case 3:
                     int taskID = Integer.parseInt(uri[2]);
-                    Optional<SubTask> optional = taskManager.getSubTask(taskID);
+                    Optional<SubTask> optional = taskManager.peekSubTask(taskID);
                     if (optional.isPresent()) {
                         taskManager.updateSubTask(subTask, taskID);
                         sendResponse(exchange, "Подзадача обновлена", 201);
@@ -95,7 +95,7 @@ public class SubTasksHandler extends BaseHttpHandler {
     private void subTasksDeleteHandler(HttpExchange exchange, String[] uri) throws IOException {
         if (uri.length == 3) {
             int taskID = Integer.parseInt(uri[2]);
-            Optional<SubTask> optional = taskManager.getSubTask(taskID);
+            Optional<SubTask> optional = taskManager.peekSubTask(taskID);
             if (optional.isPresent()) {
                 taskManager.removeSubTask(taskID);
                 sendResponse(exchange, "Подзадача удалена", 200);
@@ -2,6 +2,7 @@ package handlers;
 
 import com.google.gson.JsonSyntaxException;
 import com.sun.net.httpserver.HttpExchange;
+import enums.TaskType;
 import exceptions.OverlapException;
 import exceptions.TaskCreateException;
 import managers.TaskManager;
@@ -10,7 +11,7 @@ import tasks.Task;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.util.List;
+import java.time.format.DateTimeParseException;
 import java.util.Optional;
 
 
@@ -24,13 +25,17 @@ public class TasksHandler extends BaseHttpHandler {
     public void handle(HttpExchange exchange) throws IOException {
         String[] uri = exchange.getRequestURI().getPath().split("/");
         try {
+            if (isBatch(uri)) {
+                batchHandler(exchange, uri, Task.class, taskManager::addTasks, taskManager::updateTasks, taskManager::removeTasks);
+                return;
+            }
             switch (exchange.getRequestMethod()) {
                 case "GET" -> tasksGetHandler(exchange, uri);
                 case "POST" -> tasksPostHandler(exchange, uri);
                 case "DELETE" -> tasksDeleteHandler(exchange, uri);
                 default -> sendResponse(exchange, "Неизвестный метод", 405);
             }
-        } catch (IOException | NumberFormatException | JsonSyntaxException e) {
+        } catch (IOException | IllegalArgumentException | JsonSyntaxException | DateTimeParseException e) {
             sendResponse(exchange, "Ошибка ввода: некорректный формат", 404);
         } catch (OverlapException | TaskCreateException e) {
             sendResponse(exchange, e.getMessage(), 406);
@@ -40,12 +45,7 @@ public class TasksHandler extends BaseHttpHandler {
     private void tasksGetHandler(HttpExchange exchange, String[] uri) throws IOException {
         switch (uri.length) {
             case 2:
-                List<Task> tasksList = taskManager.getTasksList();
-                if (tasksList.isEmpty()) {
-                    sendResponse(exchange, "Список задач пуст", 200);
-                    return;
-                }
-                sendResponse(exchange, gson.toJson(tasksList), 200);
+                listHandler(exchange, TaskType.TASK, taskManager::tasksAfter, "Список задач пуст");
                 break;
             case 3:
                     int taskID = Integer.parseInt(uri[2]);
@@ -78,7 +78,7 @@ public class TasksHandler extends BaseHttpHandler {
                     break;
                 case 3:
                     int taskID = Integer.parseInt(uri[2]);
-                    Optional<Task> optionalTask = taskManager.getTask(taskID);
+                    Optional<Task> optionalTask = taskManager.peekTask(taskID);
                     if (optionalTask.isPresent()) {
                         taskManager.updateTask(task, taskID);
                         sendResponse(exchange, "Задача обновлена", 201);
@@ -95,7 +95,7 @@ public class TasksHandler extends BaseHttpHandler {
     private void tasksDeleteHandler(HttpExchange exchange, String[] uri) throws IOException {
         if (uri.length == 3) {
             int taskID = Integer.parseInt(uri[2]);
-            Optional<Task> optionalTask = taskManager.getTask(taskID);
+            Optional<Task> optionalTask = taskManager.peekTask(taskID);
             if (optionalTask.isPresent()) {
                 taskManager.removeTask(taskID);
                 sendResponse(exchange, "Задача удалена", 200);
@@ -0,0 +1,45 @@
+package json;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import tasks.Epic;
+import tasks.SubTask;
+import tasks.Task;
+
+import java.io.IOException;
+
+// Gson пишет поля задачи напрямую, а у задачи с выгруженным текстом поля названия и описания пусты:
+// такая задача пишется через копию, которая получает текст из источника
+public class TaskTextAdapterFactory implements TypeAdapterFactory {
+
+    @Override
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        if (!Task.class.isAssignableFrom(type.getRawType())) {
+            return null;
+        }
+        TypeAdapter<T> delegate = gson.getDelegateAdapter(this, type);
+        return new TypeAdapter<>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public void write(JsonWriter jsonWriter, T value) throws IOException {
+                if (value instanceof Task task && task.isTextDetached()) {
+                    value = (T) switch (task) {
+                        case Epic epic -> new Epic(epic);
+                        case SubTask subTask -> new SubTask(subTask);
+                        default -> new Task(task);
+                    };
+                }
+                delegate.write(jsonWriter, value);
+            }
+
+            @Override
+            public T read(JsonReader jsonReader) throws IOException {
+                return delegate.read(jsonReader);
+            }
+        };
+    }
+}
@@ -0,0 +1,610 @@
+package managers;
+
+import exceptions.ManagerSaveException;
+import tasks.Task;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+// Хранилище в файле из страниц PAGE_SIZE байт: B+-дерево по id, в листьях - записи BinaryTaskCodec.
+// Страница 0 - заголовок (MAGIC, версия, размер страницы, корень, число страниц, голова списка свободных
+// страниц, счетчик id). Лист: тип, число записей, записи (id, длина, байты) по возрастанию id; запись длиннее
+// MAX_INLINE лежит в цепочке страниц переполнения, а в листе остается ссылка на нее. Внутренняя страница:
+// тип, число ключей, первый потомок, пары (ключ, потомок). Изменение касается только страниц на пути
+// от корня к листу, поэтому стоимость записи - O(log n) страниц независимо от размера набора, а в памяти
+// держится не больше cachePages страниц (LRU), остальное читается с диска по мере надобности.
+// Опустевший лист освобождается вместе со ссылкой в родителе, недозаполненные страницы не сливаются -
+// освободившиеся страницы переиспользуются через список свободных страниц.
+// Страницы пишутся на место без журнала, как и снимок в режиме SNAPSHOT: сбой посреди apply может оставить
+// дерево несогласованным, для устойчивости к сбоям есть LogTaskStore.
+// Методы синхронизированы: find вызывается из читающих потоков параллельно с apply
+public class BTreeTaskStore implements TaskStore {
+    public static final String BTREE_EXTENSION = ".btree";
+    public static final int DEFAULT_CACHE_PAGES = 1024;
+    static final byte[] MAGIC = {'T', 'S', 'K', 'T'};
+    static final int VERSION = 1;
+    static final int PAGE_SIZE = 4096;
+
+    private static final byte LEAF = 1;
+    private static final byte INTERNAL = 2;
+    private static final byte OVERFLOW = 3;
+    private static final byte FREE = 4;
+    private static final int LEAF_HEADER = 3; // тип, число записей
+    private static final int INTERNAL_HEADER = 7; // тип, число ключей, первый потомок
+    private static final int OVERFLOW_HEADER = 7; // тип, следующая страница, занято байт
+    private static final int MAX_KEYS = (PAGE_SIZE - INTERNAL_HEADER) / 8;
+    private static final int MAX_INLINE = PAGE_SIZE / 4;
+    private static final int OVERFLOW_LENGTH = 0xFFFF; // вместо длины в листе: дальше страница и длина записи
+
+    private final FileChannel channel;
+    private final int cachePages;
+    private final Map<Integer, Node> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private final List<Node> dirty = new ArrayList<>();
+    private int root; // 0 - дерево пустое
+    private int pageCount = 1;
+    private int freeList; // 0 - свободных страниц нет
+    private int highWaterMark;
+
+    public BTreeTaskStore(Path path) {
+        this(path, DEFAULT_CACHE_PAGES);
+    }
+
+    public BTreeTaskStore(Path path, int cachePages) {
+        if (!path.getFileName().toString().endsWith(BTREE_EXTENSION)) {
+            throw new ManagerSaveException("Файл хранилища должен быть в формате .btree");
+        }
+        if (cachePages < 1) {
+            throw new IllegalArgumentException("Размер кэша страниц должен быть положительным");
+        }
+        this.cachePages = cachePages;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            try {
+                if (channel.size() == 0) {
+                    writeHeader();
+                } else {
+                    readHeader();
+                }
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка открытия файла задач: " + e.getMessage());
+        }
+    }
+
+    // обход листьев по возрастанию id; страницы читаются мимо кэша, чтобы полный обход его не вытеснял
+    @Override
+    public synchronized void load(Consumer<Task> action) {
+        try {
+            if (root != 0) {
+                visit(root, action);
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка загрузки из файла задач: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public int highWaterMark() {
+        return highWaterMark;
+    }
+
+    @Override
+    public synchronized void saveHighWaterMark(int highWaterMark) {
+        if (highWaterMark > this.highWaterMark) {
+            this.highWaterMark = highWaterMark;
+            try {
+                writeHeader();
+            } catch (IOException e) {
+                throw new ManagerSaveException("Ошибка сохранения счетчика id: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public synchronized void apply(List<TaskChange> changes) {
+        try {
+            for (TaskChange change : changes) {
+                switch (change) {
+                    case TaskChange.Saved saved -> put(saved.id(), BinaryTaskCodec.encode(saved.task()));
+                    case TaskChange.Removed removed -> delete(removed.id());
+                }
+            }
+            for (Node node : dirty) {
+                writeNode(node);
+                node.dirty = false;
+            }
+            dirty.clear();
+            writeHeader();
+            trimCache();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка автосохранения: " + e.getMessage());
+        }
+    }
+
+    // спуск от корня к листу через кэш страниц; внутри apply видны уже примененные изменения
+    @Override
+    public synchronized Optional<Task> find(int id) {
+        try {
+            if (root == 0) {
+                return Optional.empty();
+            }
+            Node node = node(root);
+            while (node instanceof Internal internal) {
+                node = node(internal.children[internal.childIndex(id)]);
+            }
+            Leaf leaf = (Leaf) node;
+            int index = leaf.indexOf(id);
+            if (dirty.isEmpty()) {
+                trimCache();
+            }
+            if (index < 0) {
+                return Optional.empty();
+            }
+            Entry entry = leaf.entries.get(index);
+            byte[] record = entry.inline != null ? entry.inline : readOverflow(entry.overflow, entry.length);
+            return Optional.of(BinaryTaskCodec.decodeRecord(record, 0));
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка чтения из файла задач: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка автосохранения: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка закрытия файла задач: " + e.getMessage());
+        }
+    }
+
+    // запись лежит в листе, если помещается в MAX_INLINE, иначе в цепочке страниц переполнения
+    private void put(int id, byte[] record) throws IOException {
+        Entry entry = record.length > MAX_INLINE
+                ? new Entry(id, null, writeOverflow(record), record.length)
+                : new Entry(id, record, 0, record.length);
+        if (root == 0) {
+            Leaf leaf = new Leaf(allocatePage());
+            leaf.entries.add(entry);
+            markDirty(leaf);
+            root = leaf.page;
+            return;
+        }
+        Split split = insert(root, entry);
+        if (split != null) {
+            Internal newRoot = new Internal(allocatePage());
+            newRoot.keys[0] = split.key;
+            newRoot.children[0] = root;
+            newRoot.children[1] = split.page;
+            newRoot.count = 1;
+            markDirty(newRoot);
+            root = newRoot.page;
+        }
+    }
+
+    // null или правая половина разделенной страницы с ее наименьшим ключом
+    private Split insert(int page, Entry entry) throws IOException {
+        Node node = node(page);
+        if (node instanceof Leaf leaf) {
+            int index = leaf.indexOf(entry.id);
+            boolean appended = -index - 1 == leaf.entries.size();
+            if (index >= 0) {
+                freeOverflow(leaf.entries.get(index));
+                leaf.entries.set(index, entry);
+            } else {
+                leaf.entries.add(-index - 1, entry);
+            }
+            markDirty(leaf);
+            return leaf.size() > PAGE_SIZE ? splitLeaf(leaf, appended) : null;
+        }
+        Internal internal = (Internal) node;
+        int child = internal.childIndex(entry.id);
+        Split split = insert(internal.children[child], entry);
+        if (split == null) {
+            return null;
+        }
+        System.arraycopy(internal.keys, child, internal.keys, child + 1, internal.count - child);
+        System.arraycopy(internal.children, child + 1, internal.children, child + 2, internal.count - child);
+        internal.keys[child] = split.key;
+        internal.children[child + 1] = split.page;
+        internal.count++;
+        markDirty(internal);
+        return internal.count > MAX_KEYS ? splitInternal(internal) : null;
+    }
+
+    // Делится по объему, а не по числу записей: записи разной длины. Новые id больше всех прежних,
+    // поэтому запись в конец листа уходит в новый лист одна, а прежний остается заполненным
+    private Split splitLeaf(Leaf leaf, boolean appended) throws IOException {
+        int splitAt = leaf.entries.size() - 1;
+        if (!appended) {
+            int half = leaf.size() / 2;
+            int size = LEAF_HEADER;
+            splitAt = 0;
+            while (splitAt < leaf.entries.size() - 1 && size + leaf.entries.get(splitAt).size() <= half) {
+                size += leaf.entries.get(splitAt++).size();
+            }
+            splitAt = Math.max(splitAt, 1);
+        }
+        Leaf right = new Leaf(allocatePage());
+        List<Entry> moved = leaf.entries.subList(splitAt, leaf.entries.size());
+        right.entries.addAll(moved);
+        moved.clear();
+        markDirty(right);
+        return new Split(right.entries.getFirst().id, right.page);
+    }
+
+    // средний ключ уходит в родителя
+    private Split splitInternal(Internal internal) throws IOException {
+        int middle = internal.count / 2;
+        Internal right = new Internal(allocatePage());
+        right.count = internal.count - middle - 1;
+        System.arraycopy(internal.keys, middle + 1, right.keys, 0, right.count);
+        System.arraycopy(internal.children, middle + 1, right.children, 0, right.count + 1);
+        internal.count = middle;
+        markDirty(right);
+        return new Split(internal.keys[middle], right.page);
+    }
+
+    private void delete(int id) throws IOException {
+        if (root == 0) {
+            return;
+        }
+        if (delete(root, id)) {
+            root = 0;
+            return;
+        }
+        Node node = node(root);
+        while (node instanceof Internal internal && internal.count == 0) { // у корня остался один потомок
+            root = internal.children[0];
+            freeNode(internal);
+            node = node(root);
+        }
+    }
+
+    // true, если страница опустела и освобождена
+    private boolean delete(int page, int id) throws IOException {
+        Node node = node(page);
+        if (node instanceof Leaf leaf) {
+            int index = leaf.indexOf(id);
+            if (index < 0) {
+                return false;
+            }
+            freeOverflow(leaf.entries.remove(index));
+            if (leaf.entries.isEmpty()) {
+                freeNode(leaf);
+                return true;
+            }
+            markDirty(leaf);
+            return false;
+        }
+        Internal internal = (Internal) node;
+        int child = internal.childIndex(id);
+        if (!delete(internal.children[child], id)) {
+            return false;
+        }
+        if (internal.count == 0) {
+            freeNode(internal);
+            return true;
+        }
+        int key = Math.max(child - 1, 0); // ключ между удаленным потомком и соседом
+        System.arraycopy(internal.keys, key + 1, internal.keys, key, internal.count - key - 1);
+        System.arraycopy(internal.children, child + 1, internal.children, child, internal.count - child);
+        internal.count--;
+        markDirty(internal);
+        return false;
+    }
+
+    private void visit(int page, Consumer<Task> action) throws IOException {
+        Node node = cache.containsKey(page) ? cache.get(page) : readNode(page);
+        if (node instanceof Leaf leaf) {
+            for (Entry entry : leaf.entries) {
+                byte[] record = entry.inline != null ? entry.inline : readOverflow(entry.overflow, entry.length);
+                action.accept(BinaryTaskCodec.decodeRecord(record, 0));
+            }
+        } else {
+            Internal internal = (Internal) node;
+            for (int i = 0; i <= internal.count; i++) {
+                visit(internal.children[i], action);
+            }
+        }
+    }
+
+    private Node node(int page) throws IOException {
+        Node node = cache.get(page);
+        if (node == null) {
+            node = readNode(page);
+            cache.put(page, node);
+        }
+        return node;
+    }
+
+    private void markDirty(Node node) {
+        if (!node.dirty) {
+            node.dirty = true;
+            dirty.add(node);
+            cache.put(node.page, node);
+        }
+    }
+
+    // вызывается, когда измененных незаписанных страниц нет, поэтому вытесняемые страницы чистые
+    private void trimCache() {
+        Iterator<Node> it = cache.values().iterator();
+        while (cache.size() > cachePages && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private int allocatePage() throws IOException {
+        if (freeList == 0) {
+            return pageCount++;
+        }
+        int page = freeList;
+        ByteBuffer buffer = ByteBuffer.allocate(5);
+        readFully(buffer, (long) page * PAGE_SIZE);
+        freeList = buffer.getInt(1);
+        return page;
+    }
+
+    private void freePage(int page) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(5);
+        buffer.put(FREE).putInt(freeList).flip();
+        writeFully(buffer, (long) page * PAGE_SIZE);
+        freeList = page;
+    }
+
+    private void freeNode(Node node) throws IOException {
+        cache.remove(node.page);
+        if (node.dirty) {
+            dirty.remove(node);
+            node.dirty = false;
+        }
+        freePage(node.page);
+    }
+
+    private int writeOverflow(byte[] record) throws IOException {
+        int capacity = PAGE_SIZE - OVERFLOW_HEADER;
+        int pages = (record.length + capacity - 1) / capacity;
+        int[] chain = new int[pages];
+        for (int i = 0; i < pages; i++) {
+            chain[i] = allocatePage();
+        }
+        for (int i = 0; i < pages; i++) {
+            int from = i * capacity;
+            int length = Math.min(capacity, record.length - from);
+            ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+            buffer.put(OVERFLOW).putInt(i + 1 < pages ? chain[i + 1] : 0).putShort((short) length)
+                    .put(record, from, length).position(0);
+            writeFully(buffer, (long) chain[i] * PAGE_SIZE);
+        }
+        return chain[0];
+    }
+
+    private byte[] readOverflow(int page, int length) throws IOException {
+        byte[] record = new byte[length];
+        int position = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+        while (position < length) {
+            buffer.clear();
+            readFully(buffer, (long) page * PAGE_SIZE);
+            if (buffer.get(0) != OVERFLOW) {
+                throw new ManagerSaveException("Поврежденная цепочка переполнения в файле задач");
+            }
+            int used = buffer.getShort(5) & 0xFFFF;
+            buffer.get(OVERFLOW_HEADER, record, position, used);
+            position += used;
+            page = buffer.getInt(1);
+        }
+        return record;
+    }
+
+    private void freeOverflow(Entry entry) throws IOException {
+        int page = entry.overflow;
+        ByteBuffer buffer = ByteBuffer.allocate(5);
+        while (page != 0) {
+            buffer.clear();
+            readFully(buffer, (long) page * PAGE_SIZE);
+            int next = buffer.getInt(1);
+            freePage(page);
+            page = next;
+        }
+    }
+
+    private Node readNode(int page) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+        readFully(buffer, (long) page * PAGE_SIZE);
+        buffer.flip();
+        byte type = buffer.get();
+        int count = buffer.getShort() & 0xFFFF;
+        if (type == LEAF) {
+            Leaf leaf = new Leaf(page);
+            for (int i = 0; i < count; i++) {
+                int id = buffer.getInt();
+                int length = buffer.getShort() & 0xFFFF;
+                if (length == OVERFLOW_LENGTH) {
+                    int overflow = buffer.getInt();
+                    leaf.entries.add(new Entry(id, null, overflow, buffer.getInt()));
+                } else {
+                    byte[] record = new byte[length];
+                    buffer.get(record);
+                    leaf.entries.add(new Entry(id, record, 0, length));
+                }
+            }
+            return leaf;
+        }
+        if (type == INTERNAL) {
+            Internal internal = new Internal(page);
+            internal.count = count;
+            internal.children[0] = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                internal.keys[i] = buffer.getInt();
+                internal.children[i + 1] = buffer.getInt();
+            }
+            return internal;
+        }
+        throw new ManagerSaveException("Страница " + page + " файла задач не является узлом дерева");
+    }
+
+    private void writeNode(Node node) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+        if (node instanceof Leaf leaf) {
+            buffer.put(LEAF).putShort((short) leaf.entries.size());
+            for (Entry entry : leaf.entries) {
+                buffer.putInt(entry.id);
+                if (entry.inline != null) {
+                    buffer.putShort((short) entry.length).put(entry.inline);
+                } else {
+                    buffer.putShort((short) OVERFLOW_LENGTH).putInt(entry.overflow).putInt(entry.length);
+                }
+            }
+        } else {
+            Internal internal = (Internal) node;
+            buffer.put(INTERNAL).putShort((short) internal.count).putInt(internal.children[0]);
+            for (int i = 0; i < internal.count; i++) {
+                buffer.putInt(internal.keys[i]).putInt(internal.children[i + 1]);
+            }
+        }
+        buffer.position(0); // страница пишется целиком, чтобы файл не обрывался посреди последней
+        writeFully(buffer, (long) node.page * PAGE_SIZE);
+    }
+
+    private void readHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(MAGIC.length + 1 + 5 * Integer.BYTES);
+        readFully(header, 0);
+        header.flip();
+        byte[] magic = new byte[MAGIC.length];
+        header.get(magic);
+        if (!Arrays.equals(magic, MAGIC) || header.get() != VERSION || header.getInt() != PAGE_SIZE) {
+            throw new ManagerSaveException("Файл не является файлом задач B+-дерева версии " + VERSION);
+        }
+        root = header.getInt();
+        pageCount = header.getInt();
+        freeList = header.getInt();
+        highWaterMark = header.getInt();
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(MAGIC.length + 1 + 5 * Integer.BYTES);
+        header.put(MAGIC).put((byte) VERSION).putInt(PAGE_SIZE).putInt(root).putInt(pageCount).putInt(freeList)
+                .putInt(highWaterMark).flip();
+        writeFully(header, 0);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new ManagerSaveException("Файл задач оборван на позиции " + position);
+            }
+            position += read;
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private abstract static class Node {
+        final int page;
+        boolean dirty;
+
+        Node(int page) {
+            this.page = page;
+        }
+    }
+
+    private static final class Leaf extends Node {
+        final List<Entry> entries = new ArrayList<>();
+
+        Leaf(int page) {
+            super(page);
+        }
+
+        // индекс записи или -(точка вставки) - 1, как в Arrays.binarySearch
+        int indexOf(int id) {
+            int low = 0;
+            int high = entries.size() - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int key = entries.get(middle).id;
+                if (key < id) {
+                    low = middle + 1;
+                } else if (key > id) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -low - 1;
+        }
+
+        int size() {
+            int size = LEAF_HEADER;
+            for (Entry entry : entries) {
+                size += entry.size();
+            }
+            return size;
+        }
+    }
+
+    // ключей на один больше допустимого, чтобы страница могла переполниться перед разделением
+    private static final class Internal extends Node {
+        final int[] keys = new int[MAX_KEYS + 1];
+        final int[] children = new int[MAX_KEYS + 2];
+        int count;
+
+        Internal(int page) {
+            super(page);
+        }
+
+        // потомок, в диапазоне которого лежит id: keys[i - 1] <= id < keys[i]
+        int childIndex(int id) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (keys[middle] <= id) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    // inline == null - запись в цепочке переполнения, начиная со страницы overflow
+    private record Entry(int id, byte[] inline, int overflow, int length) {
+        int size() {
+            return 6 + (inline != null ? length : 8);
+        }
+    }
+
+    private record Split(int key, int page) {
+    }
+}
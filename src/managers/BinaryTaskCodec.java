@@ -0,0 +1,188 @@
+package managers;
+
+import enums.TaskStatus;
+import enums.TaskType;
+import exceptions.ManagerSaveException;
+import tasks.SubTask;
+import tasks.Task;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+// Двоичный формат снимка: заголовок MAGIC + номер версии, затем записи задач подряд до конца файла.
+// Запись: байт (тип << 4 | статус, старший бит - у времени начала есть секунды), id варинтом,
+// название и описание - длина + 1 варинтом (0 - null) и байты UTF-8, время начала - минуты от эпохи
+// (UTC) зигзаг-варинтом, за ними при старшем бите - наносекунды внутри минуты, длительность в минутах,
+// у подзадачи - id эпика. Время хранится числом, поэтому при загрузке ничего не разбирается из текста
+class BinaryTaskCodec {
+    static final byte[] MAGIC = {'T', 'S', 'K', 'B'};
+    static final int VERSION = 1;
+
+    private static final int HAS_SECONDS = 0x80;
+    private static final TaskType[] TYPES = TaskType.values();
+    private static final TaskStatus[] STATUSES = TaskStatus.values();
+
+    private byte[] buffer = new byte[64];
+    private int length;
+
+    static byte[] header() {
+        byte[] header = Arrays.copyOf(MAGIC, MAGIC.length + 1);
+        header[MAGIC.length] = VERSION;
+        return header;
+    }
+
+    static byte[] encode(Task task) {
+        BinaryTaskCodec codec = new BinaryTaskCodec();
+        codec.write(task);
+        return codec.toByteArray();
+    }
+
+    // разбирает содержимое файла целиком и передает задачи в порядке записи
+    static void decode(byte[] data, Consumer<Task> action) {
+        if (data.length < MAGIC.length + 1 || !Arrays.equals(data, 0, MAGIC.length, MAGIC, 0, MAGIC.length)) {
+            throw new ManagerSaveException("Файл не является двоичным снимком задач");
+        }
+        int version = data[MAGIC.length];
+        if (version != VERSION) {
+            throw new ManagerSaveException("Неподдерживаемая версия двоичного снимка: " + version);
+        }
+        Reader reader = new Reader(data, MAGIC.length + 1);
+        while (reader.position < data.length) {
+            action.accept(reader.readTask());
+        }
+    }
+
+    // одна запись без заголовка файла, начиная с data[from]
+    static Task decodeRecord(byte[] data, int from) {
+        return new Reader(data, from).readTask();
+    }
+
+    // записи подряд без заголовка файла в data[from, to)
+    static void decodeRecords(byte[] data, int from, int to, Consumer<Task> action) {
+        Reader reader = new Reader(data, from);
+        while (reader.position < to) {
+            action.accept(reader.readTask());
+        }
+    }
+
+    void write(Task task) {
+        LocalDateTime start = task.getTaskStartTime();
+        long epochSecond = start.toEpochSecond(ZoneOffset.UTC);
+        long nanosOfMinute = Math.floorMod(epochSecond, 60L) * 1_000_000_000L + start.getNano();
+        int flags = task.getTaskType().ordinal() << 4 | task.getTaskStatus().ordinal();
+        writeByte(nanosOfMinute == 0 ? flags : flags | HAS_SECONDS);
+        writeVarLong(task.getId() & 0xFFFFFFFFL);
+        writeString(task.getTaskName());
+        writeString(task.getTaskDescription());
+        writeVarLong(zigZag(Math.floorDiv(epochSecond, 60L)));
+        if (nanosOfMinute != 0) {
+            writeVarLong(nanosOfMinute);
+        }
+        writeVarLong(zigZag(task.getTaskDuration().toMinutes()));
+        if (task instanceof SubTask subTask) {
+            writeVarLong(subTask.getEpicId() & 0xFFFFFFFFL);
+        }
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, length);
+    }
+
+    private void writeString(String value) {
+        if (value == null) {
+            writeVarLong(0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(bytes.length + 1L);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[length++] = (byte) value;
+    }
+
+    private void writeByte(int value) {
+        ensureCapacity(1);
+        buffer[length++] = (byte) value;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private int position;
+
+        Reader(byte[] data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        Task readTask() {
+            try {
+                int flags = data[position++] & 0xFF;
+                TaskType type = TYPES[(flags >>> 4) & 0x7];
+                TaskStatus status = STATUSES[flags & 0xF];
+                int id = (int) readVarLong();
+                String name = readString();
+                String description = readString();
+                long epochSecond = unZigZag(readVarLong()) * 60;
+                long nanosOfMinute = (flags & HAS_SECONDS) != 0 ? readVarLong() : 0;
+                LocalDateTime start = LocalDateTime.ofEpochSecond(epochSecond + nanosOfMinute / 1_000_000_000L,
+                        (int) (nanosOfMinute % 1_000_000_000L), ZoneOffset.UTC);
+                long duration = unZigZag(readVarLong());
+                int epicId = type == TaskType.SUBTASK ? (int) readVarLong() : 0;
+                return FileBackedTaskManager.newTask(type, id, name, status, description, start, duration, epicId);
+            } catch (ArrayIndexOutOfBoundsException e) {
+                throw new ManagerSaveException("Двоичный снимок задач оборван");
+            }
+        }
+
+        private String readString() {
+            int size = (int) readVarLong() - 1;
+            if (size < 0) {
+                return null;
+            }
+            if (size > data.length - position) {
+                throw new ArrayIndexOutOfBoundsException(position + size);
+            }
+            String value = new String(data, position, size, StandardCharsets.UTF_8);
+            position += size;
+            return value;
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = data[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new ManagerSaveException("Некорректное число в двоичном снимке задач");
+        }
+    }
+}
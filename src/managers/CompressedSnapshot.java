@@ -0,0 +1,210 @@
+package managers;
+
+import exceptions.ManagerSaveException;
+import tasks.Task;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Сжатый снимок из записей BinaryTaskCodec: заголовок MAGIC + номер версии, затем блоки, каждый из которых
+// сжат deflate отдельно и содержит только целые записи - поэтому блоки разжимаются независимо и параллельно.
+// Блок: длина несжатых данных, длина сжатых, CRC32C сжатых (по int), сжатые данные. В конце файла оглавление:
+// смещения блоков (long), число блоков, CRC32C оглавления и END_MAGIC. Оборванная запись снимка видна
+// по концу файла без чтения блоков, а поврежденный блок - по его CRC32C
+final class CompressedSnapshot {
+    static final byte[] MAGIC = {'T', 'S', 'K', 'Z'};
+    static final byte[] END_MAGIC = {'T', 'S', 'K', 'E'};
+    static final int VERSION = 1;
+    static final int BLOCK_SIZE = 1 << 18; // несжатых байт в блоке, кроме блока из одной длинной записи
+
+    private static final int BLOCK_HEADER = 3 * Integer.BYTES;
+    private static final int TRAILER = 2 * Integer.BYTES + END_MAGIC.length;
+
+    private CompressedSnapshot() {
+    }
+
+    // записи пишутся в out по мере поступления, в памяти держится один несжатый блок
+    static void write(OutputStream out, Iterable<byte[]> records) throws IOException {
+        out.write(MAGIC);
+        out.write(VERSION);
+        long offset = MAGIC.length + 1;
+        List<Long> offsets = new ArrayList<>();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            byte[] block = new byte[BLOCK_SIZE];
+            byte[] compressed = new byte[BLOCK_SIZE];
+            int length = 0;
+            for (byte[] record : records) {
+                if (length > 0 && length + record.length > block.length) {
+                    offsets.add(offset);
+                    offset += writeBlock(out, deflater, block, length, compressed);
+                    length = 0;
+                }
+                if (record.length > block.length) {
+                    block = new byte[record.length];
+                }
+                System.arraycopy(record, 0, block, length, record.length);
+                length += record.length;
+            }
+            if (length > 0) {
+                offsets.add(offset);
+                writeBlock(out, deflater, block, length, compressed);
+            }
+        } finally {
+            deflater.end();
+        }
+        ByteBuffer index = ByteBuffer.allocate(offsets.size() * Long.BYTES);
+        offsets.forEach(index::putLong);
+        CRC32C crc = new CRC32C();
+        crc.update(index.array());
+        out.write(index.array());
+        out.write(ByteBuffer.allocate(TRAILER).putInt(offsets.size()).putInt((int) crc.getValue())
+                .put(END_MAGIC).array());
+    }
+
+    // задачи в порядке записи; блоки разжимаются параллельно в общем ForkJoinPool
+    static List<Task> read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] offsets = readIndex(channel);
+            long indexStart = channel.size() - TRAILER - (long) offsets.length * Long.BYTES;
+            List<List<Task>> blocks = IntStream.range(0, offsets.length).parallel()
+                    .mapToObj(i -> {
+                        try {
+                            long end = i + 1 < offsets.length ? offsets[i + 1] : indexStart;
+                            return readBlock(channel, offsets[i], end);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .toList();
+            List<Task> tasks = new ArrayList<>(blocks.stream().mapToInt(List::size).sum());
+            blocks.forEach(tasks::addAll);
+            return tasks;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static int writeBlock(OutputStream out, Deflater deflater, byte[] block, int length, byte[] compressed)
+            throws IOException {
+        deflater.reset();
+        deflater.setInput(block, 0, length);
+        deflater.finish();
+        int size = 0;
+        while (!deflater.finished()) {
+            if (size == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            size += deflater.deflate(compressed, size, compressed.length - size);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(compressed, 0, size);
+        out.write(ByteBuffer.allocate(BLOCK_HEADER).putInt(length).putInt(size).putInt((int) crc.getValue()).array());
+        out.write(compressed, 0, size);
+        return BLOCK_HEADER + size;
+    }
+
+    // конец файла проверяется первым: оборванный снимок не доходит до разжатия блоков
+    private static long[] readIndex(FileChannel channel) throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(MAGIC.length + 1);
+        if (size < MAGIC.length + 1 + TRAILER) {
+            throw corrupted("файл короче заголовка");
+        }
+        readFully(channel, header, 0);
+        if (!Arrays.equals(header.array(), 0, MAGIC.length, MAGIC, 0, MAGIC.length)
+                || header.get(MAGIC.length) != VERSION) {
+            throw new ManagerSaveException("Файл не является сжатым снимком задач версии " + VERSION);
+        }
+        ByteBuffer trailer = ByteBuffer.allocate(TRAILER);
+        readFully(channel, trailer, size - TRAILER);
+        if (!Arrays.equals(trailer.array(), 2 * Integer.BYTES, TRAILER, END_MAGIC, 0, END_MAGIC.length)) {
+            throw corrupted("нет конца файла, запись снимка оборвана");
+        }
+        int count = trailer.getInt(0);
+        long indexStart = size - TRAILER - (long) count * Long.BYTES;
+        if (count < 0 || indexStart < MAGIC.length + 1) {
+            throw corrupted("некорректное оглавление");
+        }
+        ByteBuffer index = ByteBuffer.allocate(count * Long.BYTES);
+        readFully(channel, index, indexStart);
+        CRC32C crc = new CRC32C();
+        crc.update(index.array());
+        if ((int) crc.getValue() != trailer.getInt(Integer.BYTES)) {
+            throw corrupted("оглавление не совпадает с контрольной суммой");
+        }
+        long[] offsets = new long[count];
+        index.flip().asLongBuffer().get(offsets);
+        for (int i = 0; i < count; i++) {
+            if (offsets[i] < MAGIC.length + 1 || offsets[i] >= (i + 1 < count ? offsets[i + 1] : indexStart)) {
+                throw corrupted("некорректное смещение блока " + i);
+            }
+        }
+        return offsets;
+    }
+
+    private static List<Task> readBlock(FileChannel channel, long start, long end) throws IOException {
+        ByteBuffer data = ByteBuffer.allocate((int) (end - start));
+        readFully(channel, data, start);
+        int length = data.getInt(0);
+        int size = data.getInt(Integer.BYTES);
+        if (length < 0 || size != data.capacity() - BLOCK_HEADER) {
+            throw corrupted("некорректный заголовок блока на позиции " + start);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(data.array(), BLOCK_HEADER, size);
+        if ((int) crc.getValue() != data.getInt(2 * Integer.BYTES)) {
+            throw corrupted("блок на позиции " + start + " не совпадает с контрольной суммой");
+        }
+        byte[] raw = new byte[length];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data.array(), BLOCK_HEADER, size);
+            int inflated = 0;
+            while (inflated < length && !inflater.finished()) {
+                int count = inflater.inflate(raw, inflated, length - inflated);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += count;
+            }
+            if (inflated != length || !inflater.finished()) {
+                throw corrupted("блок на позиции " + start + " разжимается не в свою длину");
+            }
+        } catch (DataFormatException e) {
+            throw corrupted("блок на позиции " + start + ": " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+        List<Task> tasks = new ArrayList<>();
+        BinaryTaskCodec.decodeRecords(raw, 0, length, tasks::add);
+        return tasks;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw corrupted("файл оборван на позиции " + position);
+            }
+            position += read;
+        }
+    }
+
+    private static ManagerSaveException corrupted(String reason) {
+        return new ManagerSaveException("Сжатый снимок задач поврежден: " + reason);
+    }
+}
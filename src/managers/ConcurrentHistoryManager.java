@@ -0,0 +1,138 @@
+package managers;
+
+import tasks.Task;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Потокобезопасная история для многопоточного чтения задач. Просмотр не берет блокировку:
+// задача записывается в кольцевой буфер полосы потока (запись - один CAS), а в порядок LRU
+// буферы переносятся пачками под блокировкой. Перенос запускает тот поток, который заполнил
+// буфер наполовину, и только если блокировка свободна (tryLock), поэтому читатели никогда не ждут.
+// Если буфер полон, а переносом занят другой поток, просмотр уходит в общую неблокирующую очередь.
+// Порядок просмотров из разных полос при переносе может немного перемешаться - для истории это допустимо.
+// Удаление и чтение истории сначала переносят все накопленные просмотры, чтобы удаленная задача
+// не вернулась в историю из буфера.
+public class ConcurrentHistoryManager implements HistoryManager {
+    private static final int BUFFER_SIZE = 32;
+    private static final int BUFFER_MASK = BUFFER_SIZE - 1;
+    private static final int DRAIN_THRESHOLD = BUFFER_SIZE / 2;
+
+    private final HistoryManager historyManager; // меняется только под drainLock
+    private final Lock drainLock = new ReentrantLock();
+    private final ReadBuffer[] buffers;
+    private final Queue<Task> overflow = new ConcurrentLinkedQueue<>();
+
+    public ConcurrentHistoryManager(HistoryManager historyManager) {
+        this.historyManager = historyManager;
+        int processors = Runtime.getRuntime().availableProcessors();
+        buffers = new ReadBuffer[1 << (32 - Integer.numberOfLeadingZeros(Math.max(processors - 1, 1)))];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = new ReadBuffer();
+        }
+    }
+
+    @Override
+    public void addToHistory(Task task) {
+        if (task == null) {
+            return;
+        }
+        int pending = buffers[stripe()].offer(task);
+        if (pending < 0) {
+            overflow.add(task);
+            tryDrain();
+        } else if (pending >= DRAIN_THRESHOLD) {
+            tryDrain();
+        }
+    }
+
+    @Override
+    public void remove(int id) {
+        drainLock.lock();
+        try {
+            drainAll();
+            historyManager.remove(id);
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        drainLock.lock();
+        try {
+            drainAll();
+            return historyManager.getHistory();
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    private void tryDrain() {
+        if (drainLock.tryLock()) {
+            try {
+                drainAll();
+            } finally {
+                drainLock.unlock();
+            }
+        }
+    }
+
+    private void drainAll() {
+        for (ReadBuffer buffer : buffers) {
+            buffer.drainTo(historyManager);
+        }
+        Task task;
+        while ((task = overflow.poll()) != null) {
+            historyManager.addToHistory(task);
+        }
+    }
+
+    private int stripe() {
+        long threadId = Thread.currentThread().threadId();
+        return (int) (threadId * 0x9E3779B97F4A7C15L >>> 32) & (buffers.length - 1);
+    }
+
+    // кольцевой буфер с несколькими писателями и одним читателем (тем, кто держит drainLock)
+    private static final class ReadBuffer {
+        private final AtomicReferenceArray<Task> slots = new AtomicReferenceArray<>(BUFFER_SIZE);
+        private final AtomicLong writeCounter = new AtomicLong();
+        private volatile long readCounter;
+
+        // число ожидающих переноса записей после добавления или -1, если буфер полон
+        int offer(Task task) {
+            while (true) {
+                long head = readCounter;
+                long tail = writeCounter.get();
+                if (tail - head >= BUFFER_SIZE) {
+                    return -1;
+                }
+                if (writeCounter.compareAndSet(tail, tail + 1)) {
+                    slots.lazySet((int) (tail & BUFFER_MASK), task);
+                    return (int) (tail + 1 - head);
+                }
+            }
+        }
+
+        // занятая, но еще не заполненная писателем ячейка останавливает перенос до следующего раза
+        void drainTo(HistoryManager historyManager) {
+            long head = readCounter;
+            long tail = writeCounter.get();
+            for (; head < tail; head++) {
+                int slot = (int) (head & BUFFER_MASK);
+                Task task = slots.get(slot);
+                if (task == null) {
+                    break;
+                }
+                slots.lazySet(slot, null);
+                historyManager.addToHistory(task);
+            }
+            readCounter = head;
+        }
+    }
+}
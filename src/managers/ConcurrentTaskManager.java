@@ -0,0 +1,262 @@
+package managers;
+
+import enums.TaskStatus;
+import enums.TaskType;
+import tasks.*;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+// Потокобезопасный менеджер. Изменения выполняются под write-блокировкой и в конце публикуют
+// новую версию неизменяемого снимка хранилища, поэтому списки и поиск по id читают снимок
+// без блокировок и копирования. Расписание (TreeMap) читается под read-блокировкой.
+// Оптимистичное чтение StampedLock здесь не подходит: HashMap и TreeMap нельзя читать
+// одновременно с записью даже с последующей валидацией.
+// Просмотры попадают в историю через ConcurrentHistoryManager, тоже без блокировок для читателей.
+public class ConcurrentTaskManager extends InMemoryTaskManager {
+    private final Lock readLock;
+    private final Lock writeLock;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(Snapshot.EMPTY);
+    private Snapshot nextSnapshot = Snapshot.EMPTY; // собирается под write-блокировкой
+    private final IntObjectMap<Epic> changedEpics = new IntObjectMap<>(); // публикуются в снимок в конце записи
+    private final IntObjectMap<PersistentIntMap<Integer>> epicSubTasks = new IntObjectMap<>(); // id подзадач эпиков
+
+    public ConcurrentTaskManager() {
+        this(new ConcurrentHistoryManager(Managers.getDefaultHistory()));
+    }
+
+    private ConcurrentTaskManager(HistoryManager historyManager) {
+        super(historyManager);
+        ReadWriteLock lock = new ReentrantReadWriteLock();
+        this.readLock = lock.readLock();
+        this.writeLock = lock.writeLock();
+    }
+
+    @Override
+    public List<Task> getTasksList() {
+        return snapshot.get().tasks.values();
+    }
+
+    @Override
+    public List<Epic> getEpicsList() {
+        return snapshot.get().epics.values();
+    }
+
+    @Override
+    public List<SubTask> getSubTasksList() {
+        return snapshot.get().subTasks.values();
+    }
+
+    @Override
+    public List<SubTask> getSubTasksListByEpic(int epicId) {
+        Snapshot current = snapshot.get();
+        Epic epic = current.epics.get(epicId);
+        if (epic == null) {
+            return List.of();
+        }
+        return epic.getSubTasksIds().stream()
+                .map(current.subTasks::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    @Override
+    public Iterator<Task> tasksAfter(int afterId) {
+        return snapshot.get().tasks.valuesAfter(afterId);
+    }
+
+    @Override
+    public Iterator<Epic> epicsAfter(int afterId) {
+        return snapshot.get().epics.valuesAfter(afterId);
+    }
+
+    @Override
+    public Iterator<SubTask> subTasksAfter(int afterId) {
+        return snapshot.get().subTasks.valuesAfter(afterId);
+    }
+
+    // итератор TreeMap нельзя выносить за read-блокировку, поэтому обходится неизменяемый снимок
+    // расписания: место курсора находится бинарным поиском
+    @Override
+    public Iterator<Task> prioritizedAfter(LocalDateTime startTime, int afterId) {
+        List<Task> prioritized = getPrioritizedTasks();
+        if (startTime == null) {
+            return prioritized.iterator();
+        }
+        StartKey cursor = new StartKey(startTime, afterId);
+        int low = 0;
+        int high = prioritized.size();
+        while (low < high) { // первая задача после курсора
+            int middle = (low + high) >>> 1;
+            if (StartKey.of(prioritized.get(middle)).compareTo(cursor) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return prioritized.subList(low, prioritized.size()).iterator();
+    }
+
+    // индексы читаются под read-блокировкой, эпики отдаются из снимка той же версии
+    @Override
+    public List<Task> findByStatus(TaskType type, TaskStatus status) {
+        return read(() -> fromSnapshot(super.findByStatus(type, status)));
+    }
+
+    @Override
+    public List<Task> findInRange(TaskType type, LocalDateTime from, LocalDateTime to) {
+        return read(() -> fromSnapshot(super.findInRange(type, from, to)));
+    }
+
+    @Override
+    public List<Task> findByStatus(TaskType type, TaskStatus status, int afterId, int limit) {
+        return read(() -> fromSnapshot(super.findByStatus(type, status, afterId, limit)));
+    }
+
+    @Override
+    public List<Task> findInRange(TaskType type, TaskStatus status, LocalDateTime from, LocalDateTime to,
+                                  LocalDateTime afterStart, int afterId, int limit) {
+        return read(() -> fromSnapshot(super.findInRange(type, status, from, to, afterStart, afterId, limit)));
+    }
+
+    // просмотр с записью в историю наследуется: getTask вызывает peekTask и добавляет найденное в историю
+    @Override
+    public Optional<Task> peekTask(int id) {
+        return Optional.ofNullable(snapshot.get().tasks.get(id));
+    }
+
+    @Override
+    public Optional<Epic> peekEpic(int id) {
+        return Optional.ofNullable(snapshot.get().epics.get(id));
+    }
+
+    @Override
+    public Optional<SubTask> peekSubTask(int id) {
+        return Optional.ofNullable(snapshot.get().subTasks.get(id));
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        return read(super::getPrioritizedTasks);
+    }
+
+    @Override
+    public LocalDateTime findFreeSlot(Duration duration, LocalDateTime notBefore) {
+        return read(() -> super.findFreeSlot(duration, notBefore));
+    }
+
+    // Эпик меняется на месте при пересчете, поэтому в снимок попадает его версия - одна на операцию.
+    // Список id подзадач версии не копируется: для каждого эпика здесь ведется неизменяемое дерево id,
+    // которое меняется за O(log n) на подзадачу и разделяется между версиями. Поэтому публикация
+    // эпика стоит O(1), а не O(числа подзадач). В версии id подзадач идут по возрастанию.
+    @Override
+    protected void onTaskSaved(Task task) {
+        switch (task.getTaskType()) {
+            case TASK -> nextSnapshot = nextSnapshot.withTasks(nextSnapshot.tasks.put(task.getId(), task));
+            case EPIC -> changedEpics.put(task.getId(), (Epic) task);
+            case SUBTASK -> {
+                SubTask subTask = (SubTask) task;
+                nextSnapshot = nextSnapshot.withSubTasks(nextSnapshot.subTasks.put(subTask.getId(), subTask));
+                epicSubTasks.put(subTask.getEpicId(), subTasksOf(subTask.getEpicId())
+                        .put(subTask.getId(), subTask.getId()));
+            }
+        }
+    }
+
+    @Override
+    protected void onTaskRemoved(Task task) {
+        nextSnapshot = switch (task.getTaskType()) {
+            case TASK -> nextSnapshot.withTasks(nextSnapshot.tasks.remove(task.getId()));
+            case EPIC -> {
+                changedEpics.remove(task.getId());
+                epicSubTasks.remove(task.getId());
+                yield nextSnapshot.withEpics(nextSnapshot.epics.remove(task.getId()));
+            }
+            case SUBTASK -> {
+                int epicId = ((SubTask) task).getEpicId();
+                PersistentIntMap<Integer> subTasks = epicSubTasks.get(epicId);
+                if (subTasks != null) {
+                    epicSubTasks.put(epicId, subTasks.remove(task.getId()));
+                }
+                yield nextSnapshot.withSubTasks(nextSnapshot.subTasks.remove(task.getId()));
+            }
+        };
+    }
+
+    private PersistentIntMap<Integer> subTasksOf(int epicId) {
+        PersistentIntMap<Integer> subTasks = epicSubTasks.get(epicId);
+        return subTasks == null ? PersistentIntMap.empty() : subTasks;
+    }
+
+    private List<Task> fromSnapshot(List<Task> found) {
+        Snapshot current = snapshot.get();
+        return found.stream()
+                .map(task -> task.getTaskType() == TaskType.EPIC ? current.epics.get(task.getId()) : task)
+                .toList();
+    }
+
+    private <T> T read(Supplier<T> action) {
+        readLock.lock();
+        try {
+            return action.get();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    protected void mutate(Runnable operation) {
+        writeLock.lock();
+        try {
+            super.mutate(operation);
+        } finally {
+            if (!changedEpics.isEmpty()) {
+                PersistentIntMap<Epic> epics = nextSnapshot.epics;
+                for (Epic epic : changedEpics.values()) {
+                    epics = epics.put(epic.getId(), new Epic(epic, subTasksOf(epic.getId()).values()));
+                }
+                changedEpics.clear();
+                nextSnapshot = nextSnapshot.withEpics(epics);
+            }
+            snapshot.set(nextSnapshot); // читатели видят либо прежнюю, либо новую версию целиком
+            writeLock.unlock();
+        }
+    }
+
+    // корень неизменяемого хранилища, заменяется целиком при каждой записи
+    private static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(PersistentIntMap.empty(), PersistentIntMap.empty(),
+                PersistentIntMap.empty());
+
+        final PersistentIntMap<Task> tasks;
+        final PersistentIntMap<Epic> epics;
+        final PersistentIntMap<SubTask> subTasks;
+
+        Snapshot(PersistentIntMap<Task> tasks, PersistentIntMap<Epic> epics, PersistentIntMap<SubTask> subTasks) {
+            this.tasks = tasks;
+            this.epics = epics;
+            this.subTasks = subTasks;
+        }
+
+        Snapshot withTasks(PersistentIntMap<Task> tasks) {
+            return new Snapshot(tasks, epics, subTasks);
+        }
+
+        Snapshot withEpics(PersistentIntMap<Epic> epics) {
+            return new Snapshot(tasks, epics, subTasks);
+        }
+
+        Snapshot withSubTasks(PersistentIntMap<SubTask> subTasks) {
+            return new Snapshot(tasks, epics, subTasks);
+        }
+    }
+}
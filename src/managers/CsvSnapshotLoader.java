@@ -0,0 +1,181 @@
+package managers;
+
+import tasks.Task;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+// Чтение CSV-снимка через отображение файла в память. Файл после заголовка делится на куски по границам
+// строк, куски разбираются параллельно в ForkJoinPool (каждый - своим отображением, поэтому размер файла
+// не ограничен 2 ГБ одного MappedByteBuffer), а задачи возвращаются в порядке файла.
+// Сами хранилища менеджера не потокобезопасны, поэтому слияние в них остается за вызывающим
+class CsvSnapshotLoader {
+    static final long MIN_CHUNK_SIZE = 1 << 20; // файл меньше одного куска разбирается в текущем потоке
+    static final long MAX_CHUNK_SIZE = 1 << 28;
+    private static final int BLOCK_SIZE = 1 << 16;
+    private static final int CHUNKS_PER_THREAD = 4; // чтобы неравные по стоимости куски выравнивались
+
+    private CsvSnapshotLoader() {
+    }
+
+    // строка файла - байты line[from, to) без перевода строки; массив переиспользуется между вызовами
+    interface LineVisitor {
+        void visit(byte[] line, int from, int to);
+    }
+
+    // то же со смещением начала строки от начала файла
+    interface PositionedLineVisitor {
+        void visit(long offset, byte[] line, int from, int to);
+    }
+
+    // задачи снимка по порядку или пустой список, если в начале файла нет заголовка
+    static List<Task> load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            byte[] header = FileBackedTaskManager.HEAD_LINE_IN_AUTOSAVE_FILE.getBytes(StandardCharsets.UTF_8);
+            if (!isHeaderLine(channel, header, size)) {
+                return List.of();
+            }
+            List<long[]> chunks = split(channel, header.length, size);
+            if (chunks.size() <= 1) {
+                return chunks.isEmpty() ? List.of() : parse(channel, chunks.getFirst());
+            }
+            List<List<Task>> parsed = chunks.parallelStream() // общий ForkJoinPool
+                    .map(chunk -> {
+                        try {
+                            return parse(channel, chunk);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .toList();
+            List<Task> tasks = new ArrayList<>(parsed.stream().mapToInt(List::size).sum());
+            parsed.forEach(tasks::addAll);
+            return tasks;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // куски [from, to): граница сдвигается вперед до конца строки, в которую попала
+    private static List<long[]> split(FileChannel channel, long start, long size) throws IOException {
+        int parallelism = ForkJoinPool.commonPool().getParallelism();
+        long chunkSize = Math.min(MAX_CHUNK_SIZE,
+                Math.max(MIN_CHUNK_SIZE, (size - start) / ((long) parallelism * CHUNKS_PER_THREAD)));
+        List<long[]> chunks = new ArrayList<>();
+        ByteBuffer window = ByteBuffer.allocate(4096);
+        long from = start;
+        while (from < size) {
+            long to = Math.min(size, from + chunkSize);
+            while (to < size) {
+                window.clear();
+                int read = channel.read(window, to);
+                int newline = indexOf(window, read);
+                if (newline >= 0) {
+                    to += newline + 1;
+                    break;
+                }
+                to += read;
+            }
+            chunks.add(new long[]{from, Math.min(to, size)});
+            from = to;
+        }
+        return chunks;
+    }
+
+    // непустые строки файла по порядку в текущем потоке (для журнала)
+    static void forEachLine(Path path, LineVisitor visitor) throws IOException {
+        forEachLine(path, (offset, line, from, to) -> visitor.visit(line, from, to));
+    }
+
+    static void forEachLine(Path path, PositionedLineVisitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            for (long[] chunk : split(channel, 0, channel.size())) {
+                forEachLine(channel, chunk, visitor);
+            }
+        }
+    }
+
+    private static List<Task> parse(FileChannel channel, long[] chunk) throws IOException {
+        List<Task> tasks = new ArrayList<>();
+        forEachLine(channel, chunk, (offset, line, from, to) -> tasks.add(CsvTaskCodec.read(line, from, to)));
+        return tasks;
+    }
+
+    // отображение копируется блоками в массив: побайтовый поиск перевода строки по массиву быстрее,
+    // чем обращения к MappedByteBuffer; неполная строка в конце блока переносится в начало следующего
+    private static void forEachLine(FileChannel channel, long[] chunk, PositionedLineVisitor visitor)
+            throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]);
+        byte[] block = new byte[BLOCK_SIZE];
+        long blockStart = chunk[0]; // смещение block[0] в файле
+        int carry = 0;
+        int position = 0;
+        int limit = buffer.limit();
+        while (position < limit) {
+            int count = Math.min(block.length - carry, limit - position);
+            buffer.get(position, block, carry, count);
+            position += count;
+            int end = carry + count;
+            int lineStart = 0;
+            for (int i = carry; i < end; i++) {
+                if (block[i] == '\n') {
+                    visitLine(visitor, blockStart + lineStart, block, lineStart, i);
+                    lineStart = i + 1;
+                }
+            }
+            carry = end - lineStart;
+            System.arraycopy(block, lineStart, block, 0, carry);
+            blockStart += lineStart;
+            if (carry == block.length) { // строка длиннее блока
+                block = Arrays.copyOf(block, block.length * 2);
+            }
+        }
+        visitLine(visitor, blockStart, block, 0, carry);
+    }
+
+    private static void visitLine(PositionedLineVisitor visitor, long offset, byte[] block, int from, int to) {
+        if (to > from && block[to - 1] == '\r') {
+            to--;
+        }
+        if (to > from) {
+            visitor.visit(offset, block, from, to);
+        }
+    }
+
+    // первая строка файла совпадает с заголовком, как при чтении через BufferedReader.readLine
+    private static boolean isHeaderLine(FileChannel channel, byte[] header, long size) throws IOException {
+        if (size < header.length) {
+            return false;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size, header.length + 1));
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0) {
+            // дочитываем заголовок
+        }
+        buffer.flip();
+        if (!buffer.slice(0, header.length).equals(ByteBuffer.wrap(header))) {
+            return false;
+        }
+        return buffer.limit() == header.length || buffer.get(header.length) == '\n'
+                || buffer.get(header.length) == '\r';
+    }
+
+    private static int indexOf(ByteBuffer window, int length) {
+        for (int i = 0; i < length; i++) {
+            if (window.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
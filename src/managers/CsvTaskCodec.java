@@ -0,0 +1,350 @@
+package managers;
+
+import enums.TaskStatus;
+import enums.TaskType;
+import tasks.SubTask;
+import tasks.Task;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+// Запись и разбор строки CSV-снимка без String.split и промежуточных подстрок: числа, перечисления
+// и время разбираются прямо из байтов UTF-8, строки создаются только для названия и описания.
+// Поля без спецсимволов пишутся как в toString задач, поэтому старые файлы читаются без изменений.
+// Поле с запятой, кавычкой или переводом строки берется в кавычки (RFC 4180: кавычка внутри удваивается),
+// а переводы строк и обратная косая черта внутри кавычек экранируются как \n, \r и \\ - одна запись
+// всегда занимает одну строку, на этом держатся журнал и параллельная загрузка
+final class CsvTaskCodec {
+    private static final TaskType[] TYPES = TaskType.values();
+    private static final TaskStatus[] STATUSES = TaskStatus.values();
+    private static final byte[][] TYPE_NAMES = names(TYPES);
+    private static final byte[][] STATUS_NAMES = names(STATUSES);
+
+    private final byte[] line;
+    private final int lineStart;
+    private final int end;
+    private int position;
+
+    private CsvTaskCodec(byte[] line, int from, int to) {
+        this.line = line;
+        this.lineStart = from;
+        this.position = from;
+        this.end = to;
+    }
+
+    // запись задачи в out без перевода строки
+    static void write(Task task, StringBuilder out) {
+        out.append(task.getId()).append(',')
+                .append(task.getTaskType().name()).append(',');
+        writeString(task.getTaskName(), out);
+        out.append(',').append(task.getTaskStatus().name()).append(',');
+        writeString(task.getTaskDescription(), out);
+        out.append(',');
+        writeDateTime(task.getTaskStartTime(), out);
+        out.append(',');
+        if (task instanceof SubTask subTask) {
+            writeDuration(subTask.getTaskDuration().toMinutes(), out);
+            out.append(',').append(subTask.getEpicId());
+        } else {
+            out.append(task.getTaskDuration().toMinutes());
+        }
+    }
+
+    // разбор записи из байтов line[from, to) без перевода строки
+    static Task read(byte[] line, int from, int to) {
+        return new CsvTaskCodec(line, from, to).readTask();
+    }
+
+    private Task readTask() {
+        int id = readInt();
+        TaskType type = TYPES[readEnum(TYPE_NAMES, "тип")];
+        String name = readString();
+        TaskStatus status = STATUSES[readEnum(STATUS_NAMES, "статус")];
+        String description = readString();
+        LocalDateTime start = readDateTime();
+        long duration = readDuration();
+        int epicId = type == TaskType.SUBTASK ? readInt() : 0;
+        return FileBackedTaskManager.newTask(type, id, name, status, description, start, duration, epicId);
+    }
+
+    private static void writeString(String value, StringBuilder out) {
+        String text = String.valueOf(value);
+        if (!needsQuotes(text)) {
+            out.append(text);
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\"\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                default -> out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    // обратная косая черта вне кавычек ничего не экранирует, поэтому сама по себе кавычек не требует
+    private static boolean needsQuotes(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // тот же текст, что у LocalDateTime.toString, без промежуточных строк
+    private static void writeDateTime(LocalDateTime value, StringBuilder out) {
+        int year = value.getYear();
+        if (year < 0 || year > 9999) {
+            out.append(value);
+            return;
+        }
+        pad(year, 4, out);
+        out.append('-');
+        pad(value.getMonthValue(), 2, out);
+        out.append('-');
+        pad(value.getDayOfMonth(), 2, out);
+        out.append('T');
+        pad(value.getHour(), 2, out);
+        out.append(':');
+        pad(value.getMinute(), 2, out);
+        int second = value.getSecond();
+        int nano = value.getNano();
+        if (second > 0 || nano > 0) {
+            out.append(':');
+            pad(second, 2, out);
+            if (nano > 0) {
+                out.append('.');
+                if (nano % 1_000_000 == 0) {
+                    pad(nano / 1_000_000, 3, out);
+                } else if (nano % 1000 == 0) {
+                    pad(nano / 1000, 6, out);
+                } else {
+                    pad(nano, 9, out);
+                }
+            }
+        }
+    }
+
+    // SubTask.toString пишет длительность как Duration.toString (PT1H30M), Task и Epic - числом минут
+    private static void writeDuration(long minutes, StringBuilder out) {
+        if (minutes < 0) {
+            out.append(Duration.ofMinutes(minutes));
+        } else if (minutes == 0) {
+            out.append("PT0S");
+        } else {
+            out.append("PT");
+            if (minutes >= 60) {
+                out.append(minutes / 60).append('H');
+            }
+            if (minutes % 60 != 0) {
+                out.append(minutes % 60).append('M');
+            }
+        }
+    }
+
+    private static void pad(int value, int width, StringBuilder out) {
+        for (int limit = 10, digits = 1; digits < width; limit *= 10, digits++) {
+            if (value < limit) {
+                out.append('0');
+            }
+        }
+        out.append(value);
+    }
+
+    private int readInt() {
+        long value = readLong();
+        if (value != (int) value) {
+            throw error("число вне диапазона");
+        }
+        return (int) value;
+    }
+
+    private long readLong() {
+        boolean negative = position < end && line[position] == '-';
+        if (negative) {
+            position++;
+        }
+        int start = position;
+        long value = 0;
+        while (position < end && line[position] != ',') {
+            int digit = line[position] - '0';
+            if (digit < 0 || digit > 9 || position - start >= 18) {
+                throw error("некорректное число");
+            }
+            value = value * 10 + digit;
+            position++;
+        }
+        if (position == start) {
+            throw error("пустое число");
+        }
+        skipComma();
+        return negative ? -value : value;
+    }
+
+    private int readEnum(byte[][] names, String field) {
+        int from = position;
+        int length = fieldEnd() - from;
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].length == length && Arrays.equals(line, from, from + length, names[i], 0, length)) {
+                position = from + length;
+                skipComma();
+                return i;
+            }
+        }
+        throw error("некорректный " + field);
+    }
+
+    private String readString() {
+        if (position >= end || line[position] != '"') {
+            int start = position;
+            position = fieldEnd();
+            String value = new String(line, start, position - start, StandardCharsets.UTF_8);
+            skipComma();
+            return value;
+        }
+        int start = ++position;
+        boolean escaped = false;
+        while (true) {
+            if (position >= end) {
+                throw error("незакрытая кавычка");
+            }
+            byte b = line[position];
+            if (b == '\\') {
+                escaped = true;
+                position += 2;
+            } else if (b == '"') {
+                if (position + 1 < end && line[position + 1] == '"') {
+                    escaped = true;
+                    position += 2;
+                } else {
+                    break;
+                }
+            } else {
+                position++;
+            }
+        }
+        String value = escaped ? unescape(start, position) : new String(line, start, position - start,
+                StandardCharsets.UTF_8);
+        position++;
+        skipComma();
+        return value;
+    }
+
+    private String unescape(int from, int to) {
+        byte[] bytes = new byte[to - from];
+        int length = 0;
+        for (int i = from; i < to; i++) {
+            byte b = line[i];
+            if (b == '"' || b == '\\') {
+                i++;
+                if (b == '\\') {
+                    b = switch (line[i]) {
+                        case 'n' -> '\n';
+                        case 'r' -> '\r';
+                        default -> line[i];
+                    };
+                }
+            }
+            bytes[length++] = b;
+        }
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    // yyyy-MM-ddTHH:mm[:ss[.fraction]]; другой вид (год вне 0..9999) разбирается LocalDateTime.parse
+    private LocalDateTime readDateTime() {
+        int start = position;
+        int fieldEnd = fieldEnd();
+        int length = fieldEnd - start;
+        if (length < 16 || line[start + 4] != '-' || line[start + 10] != 'T') {
+            position = fieldEnd;
+            skipComma();
+            return LocalDateTime.parse(new String(line, start, length, StandardCharsets.US_ASCII));
+        }
+        int year = digits(start, 4);
+        int month = digits(start + 5, 2);
+        int day = digits(start + 8, 2);
+        int hour = digits(start + 11, 2);
+        int minute = digits(start + 14, 2);
+        int second = 0;
+        int nano = 0;
+        if (length > 16) {
+            second = digits(start + 17, 2);
+            if (length > 19) {
+                int fractionDigits = length - 20;
+                nano = digits(start + 20, fractionDigits);
+                for (int i = fractionDigits; i < 9; i++) {
+                    nano *= 10;
+                }
+            }
+        }
+        position = fieldEnd;
+        skipComma();
+        return LocalDateTime.of(year, month, day, hour, minute, second, nano);
+    }
+
+    // Task.toString пишет число минут, в старых файлах встречается ISO-8601 (PT30M)
+    private long readDuration() {
+        if (position < end && line[position] == 'P') {
+            int start = position;
+            position = fieldEnd();
+            String value = new String(line, start, position - start, StandardCharsets.US_ASCII);
+            skipComma();
+            return Duration.parse(value).toMinutes();
+        }
+        return readLong();
+    }
+
+    private int digits(int from, int count) {
+        if (count < 1 || count > 9) {
+            throw error("некорректное время");
+        }
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw error("некорректное время");
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private int fieldEnd() {
+        int i = position;
+        while (i < end && line[i] != ',') {
+            i++;
+        }
+        return i;
+    }
+
+    private void skipComma() {
+        if (position < end) {
+            if (line[position] != ',') {
+                throw error("ожидалась запятая");
+            }
+            position++;
+        }
+    }
+
+    private IllegalArgumentException error(String reason) {
+        return new IllegalArgumentException("Ошибка преобразования строки в задачу: " + reason + " в позиции "
+                + (position - lineStart) + ": " + new String(line, lineStart, end - lineStart, StandardCharsets.UTF_8));
+    }
+
+    private static byte[][] names(Enum<?>[] values) {
+        byte[][] names = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            names[i] = values[i].name().getBytes(StandardCharsets.US_ASCII);
+        }
+        return names;
+    }
+}
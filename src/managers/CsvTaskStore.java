@@ -0,0 +1,27 @@
+package managers;
+
+import enums.SaveMode;
+import enums.SyncMode;
+import exceptions.ManagerSaveException;
+
+import java.io.File;
+import java.nio.file.Path;
+
+// Снимок CSV FileBackedTaskManager в режиме SNAPSHOT: каждая операция переписывает файл целиком
+// через временный файл и атомарное переименование, стоимость записи растет с числом задач.
+// Это тот же FileTaskStore, поэтому файл читается и FileBackedTaskManager, и наоборот (журналы переносятся в снимок).
+// Строки снимка хранятся в памяти, поэтому менеджер с текстами вне памяти (Managers.getStoreBacked с размером
+// кэша) поверх этого хранилища память не экономит, а только разбирает строки заново
+public class CsvTaskStore extends FileTaskStore {
+
+    public CsvTaskStore(Path path) {
+        super(csvFile(path), SaveMode.SNAPSHOT, SyncMode.OS_BUFFERED, false, true);
+    }
+
+    private static File csvFile(Path path) {
+        if (!path.getFileName().toString().endsWith(FileBackedTaskManager.CSV_EXTENSION)) {
+            throw new ManagerSaveException("Файл хранилища должен быть в формате .csv");
+        }
+        return path.toFile();
+    }
+}
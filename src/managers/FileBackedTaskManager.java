@@ -1,205 +1,167 @@
 package managers;
 
+import enums.SaveMode;
+import enums.SyncMode;
 import enums.TaskStatus;
 import enums.TaskType;
 import exceptions.ManagerSaveException;
 import tasks.*;
 
-import java.io.*;
+import java.io.File;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.time.Duration;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
+// Менеджер, который сохраняет задачи в файл автосохранения. Формат файла и режим записи реализует
+// FileTaskStore, а изменения попадают в него через TaskStore, как у любого хранилища InMemoryTaskManager
 public class FileBackedTaskManager extends InMemoryTaskManager {
 
     public static final String HEAD_LINE_IN_AUTOSAVE_FILE = "id,type,name,status,description,epic,start,duration";
-    private final File autoSave;
+    public static final String CSV_EXTENSION = ".csv";
+    public static final String BINARY_EXTENSION = ".bin"; // снимок в двоичном формате BinaryTaskCodec
+    public static final String COMPRESSED_EXTENSION = ".binz"; // записи BinaryTaskCodec в сжатых блоках CompressedSnapshot
+    public static final String SLOTTED_EXTENSION = ".slots"; // файл со слотами, пишутся только изменения
+    public static final String HIGH_WATER_MARK_SUFFIX = ".id"; // файл рядом с автосохранением: последний выданный id
+    public static final String JOURNAL_SUFFIX = ".journal"; // изменения после последнего снимка
+    public static final String COMPACTING_SUFFIX = ".compacting"; // журнал, который переносится в снимок
+    public static final int DEFAULT_COMPACTION_THRESHOLD = 10_000; // записей журнала до фонового сжатия
+    private final FileTaskStore store;
 
     public FileBackedTaskManager(String path) {
-        try {
-            File file = new File(path);
-            if (file.exists() && file.isFile()) {
-                if (path.endsWith(".csv")) {
-                    if (Files.readString(file.toPath()).isEmpty()) {
-                        this.autoSave = file;
-                    } else {
-                        throw new ManagerSaveException("Файл должен быть пуст");
-                    }
-                } else {
-                    throw new ManagerSaveException("Файл должен быть в формате .csv");
-                }
-            } else {
-                throw new ManagerSaveException("Файл не найден");
-            }
-        } catch (IOException e) {
-            throw new ManagerSaveException("Файл не подходит для FileBackedTaskManager");
-        }
-    }
-
-    private FileBackedTaskManager(File file) {
-        this.autoSave = file;
+        this(path, SaveMode.SNAPSHOT);
     }
 
-    @Override
-    public void addTask(Task task) {
-        super.addTask(task);
-        save();
+    public FileBackedTaskManager(String path, SaveMode saveMode) {
+        this(path, saveMode, SyncMode.OS_BUFFERED);
     }
 
-    @Override
-    public void addEpic(Epic epic) {
-        super.addEpic(epic);
-        save();
+    public FileBackedTaskManager(String path, SaveMode saveMode, SyncMode syncMode) {
+        this(new FileTaskStore(emptyAutoSave(path), saveMode, syncMode, true));
     }
 
-    @Override
-    public void addSubTask(SubTask subTask, int epicId) {
-        super.addSubTask(subTask, epicId);
-        save();
+    private FileBackedTaskManager(FileTaskStore store) {
+        super(store);
+        this.store = store;
     }
 
-    @Override
-    public void updateTask(Task task, int taskId) {
-        super.updateTask(task, taskId);
-        save();
+    public File getAutoSave() {
+        return store.file();
     }
 
-    @Override
-    public void updateEpic(Epic epic, int epicId) {
-        super.updateEpic(epic, epicId);
-        save();
+    public void setCompactionThreshold(int compactionThreshold) {
+        store.setCompactionThreshold(compactionThreshold);
     }
 
-    @Override
-    public void updateSubTask(SubTask subTask, int subTaskId) {
-        super.updateSubTask(subTask, subTaskId);
-        save();
+    // задержка перед фоновой записью и число изменений, после которого снимок пишется сразу
+    public void setWriteBehindLimits(long delayMillis, int maxChanges) {
+        store.setWriteBehindLimits(delayMillis, maxChanges);
     }
 
-    @Override
-    public void removeTask(int taskId) {
-        super.removeTask(taskId);
-        save();
+    // все изменения, сделанные до вызова, оказываются на диске
+    public void flush() {
+        store.flush();
     }
 
-    @Override
-    public void removeSubTask(int subTaskId) {
-        super.removeSubTask(subTaskId);
-        save();
+    public void close() {
+        store.close();
     }
 
-    @Override
-    public void removeEpic(int epicId) {
-        super.removeEpic(epicId);
-        save();
+    public void compactJournal() {
+        store.compactJournal();
     }
 
+    // Изменения сериализуются монитором менеджера, а ожидание записи журнала на диск идет уже без него,
+    // поэтому параллельные писатели попадают в одну группу журнала и делят один force.
+    // Чтение, как и в InMemoryTaskManager, с параллельными изменениями не согласовано
     @Override
-    public void removeAllTasks() {
-        super.removeAllTasks();
-        save();
+    protected void mutate(Runnable operation) {
+        FileTaskStore.Commit commit;
+        synchronized (this) {
+            super.mutate(operation);
+            commit = store.takeCommit();
+        }
+        commit.awaitDurable();
     }
 
-    @Override
-    public void removeAllSubTasks() {
-        super.removeAllSubTasks();
-        save();
+    public static FileBackedTaskManager loadFromFile(File file) {
+        return loadFromFile(file, SaveMode.SNAPSHOT);
     }
 
-    @Override
-    public void removeAllEpics() {
-        super.removeAllEpics();
-        save();
+    public static FileBackedTaskManager loadFromFile(File file, SaveMode saveMode) {
+        return loadFromFile(file, saveMode, SyncMode.OS_BUFFERED);
     }
 
-    public File getAutoSave() {
-        return autoSave;
+    // восстановление из снимка и журналов, см. FileTaskStore.load
+    public static FileBackedTaskManager loadFromFile(File file, SaveMode saveMode, SyncMode syncMode) {
+        if (!file.getName().endsWith(CSV_EXTENSION) && !FileTaskStore.isBinary(file)
+                && !file.getName().endsWith(SLOTTED_EXTENSION)) {
+            throw new ManagerSaveException("Файл автосохранения должен быть в формате .csv, .bin, .binz или .slots");
+        }
+        return new FileBackedTaskManager(new FileTaskStore(file, saveMode, syncMode, false));
     }
 
-    private void save() {
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(autoSave, StandardCharsets.UTF_8))) {
-            bw.write("");
-            bw.write(HEAD_LINE_IN_AUTOSAVE_FILE);
-            bw.newLine();
-
-            for (Task task : getTasksList()) {
-                bw.write(task.toString());
-                bw.newLine();
-            }
-
-            for (Epic epic : getEpicsList()) {
-                bw.write(epic.toString());
-                bw.newLine();
-            }
-
-            for (SubTask subTask : getSubTasksList()) {
-                bw.write(subTask.toString());
-                bw.newLine();
+    // файл для нового менеджера должен существовать и быть пустым
+    private static File emptyAutoSave(String path) {
+        try {
+            File file = new File(path);
+            if (file.exists() && file.isFile()) {
+                if (path.endsWith(CSV_EXTENSION) || path.endsWith(BINARY_EXTENSION)
+                        || path.endsWith(COMPRESSED_EXTENSION) || path.endsWith(SLOTTED_EXTENSION)) {
+                    if (Files.size(file.toPath()) == 0) {
+                        return file;
+                    } else {
+                        throw new ManagerSaveException("Файл должен быть пуст");
+                    }
+                } else {
+                    throw new ManagerSaveException("Файл должен быть в формате .csv, .bin, .binz или .slots");
+                }
+            } else {
+                throw new ManagerSaveException("Файл не найден");
             }
-
         } catch (IOException e) {
-            throw new ManagerSaveException("Ошибка автосохранения: " + e.getMessage());
+            throw new ManagerSaveException("Файл не подходит для FileBackedTaskManager");
         }
     }
 
-    public static FileBackedTaskManager loadFromFile(File file) {
-        if (!file.getName().endsWith(".csv")) {
-            throw new ManagerSaveException("Файл автосохранения должен быть в формате .csv");
+    // Перевод сохраненного состояния (снимок и журналы) из CSV в двоичный формат (.bin или сжатый .binz).
+    // Исходные файлы не меняются, у двоичного файла журнала нет, счетчик id копируется
+    public static void convertToBinary(File csvFile, File binaryFile) {
+        if (!csvFile.getName().endsWith(CSV_EXTENSION) || !FileTaskStore.isBinary(binaryFile)) {
+            throw new ManagerSaveException("Конвертация возможна только из .csv в .bin или .binz");
         }
-
-        FileBackedTaskManager taskManager = new FileBackedTaskManager(file);
-        try (BufferedReader br = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
-            if (Files.readString(file.toPath()).isEmpty()) {
-                return new FileBackedTaskManager(file.getPath());
-            }
-            if (br.readLine().equals(HEAD_LINE_IN_AUTOSAVE_FILE)) {
-                while (br.ready()) {
-
-                    Task task = taskFromString(br.readLine());
-
-                    if (task.getId() > defaultId) {
-                        defaultId = task.getId();
-                    }
-
-                    switch (task.getTaskType()) {
-                        case TaskType.SUBTASK -> taskManager.subTasksList.put(task.getId(), (SubTask) task);
-                        case TaskType.EPIC -> taskManager.epicsList.put(task.getId(), (Epic) task);
-                        case TaskType.TASK -> taskManager.tasksList.put(task.getId(), task);
-                    }
-                }
+        try {
+            SortedIntObjectMap<Task> records = FileTaskStore.readRecords(csvFile);
+            List<byte[]> encoded = new ArrayList<>(records.size());
+            records.valuesAfter(0).forEachRemaining(task -> encoded.add(BinaryTaskCodec.encode(task)));
+            FileTaskStore.replaceSnapshot(binaryFile, encoded);
+            File highWaterMarkFile = FileTaskStore.highWaterMarkFile(csvFile);
+            if (highWaterMarkFile.exists()) {
+                Files.copy(highWaterMarkFile.toPath(), FileTaskStore.highWaterMarkFile(binaryFile).toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
             }
         } catch (IOException e) {
-            throw new ManagerSaveException("Ошибка загрузки из файла автосохранения: " + e.getMessage());
+            throw new ManagerSaveException("Ошибка конвертации файла автосохранения: " + e.getMessage());
         }
-        return taskManager;
     }
 
     public static Task taskFromString(String value) {
+        byte[] line = value.getBytes(StandardCharsets.UTF_8);
+        return CsvTaskCodec.read(line, 0, line.length);
+    }
 
-        String[] taskData = value.split(",");
-        TaskType taskType = TaskType.valueOf(taskData[1]);
-
-        int taskId = Integer.parseInt(taskData[0]);
-        String taskName = taskData[2];
-        String taskDescription = taskData[4];
-        LocalDateTime taskStartTime = LocalDateTime.parse(taskData[5]);
-        long taskDuration;
-        if (taskData[6].equals("0")) {
-            taskDuration = 0;
-        } else {
-            taskDuration = Duration.parse(taskData[6]).toMinutes();
-        }
-
-        TaskStatus taskStatus;
-        switch (taskData[3]) {
-            case "NEW" -> taskStatus = TaskStatus.NEW;
-            case "IN_PROGRESS" -> taskStatus = TaskStatus.IN_PROGRESS;
-            case "DONE" -> taskStatus = TaskStatus.DONE;
-            default -> throw new IllegalArgumentException("Ошибка преобразования строки в задачу: некорректный " +
-                    "статус у задачи ID " + taskId);
-        }
+    public static String taskToString(Task task) {
+        StringBuilder line = new StringBuilder(128);
+        CsvTaskCodec.write(task, line);
+        return line.toString();
+    }
 
+    // сборка задачи из сохраненных полей, общая для CSV и двоичного формата
+    static Task newTask(TaskType taskType, int taskId, String taskName, TaskStatus taskStatus, String taskDescription,
+                        LocalDateTime taskStartTime, long taskDuration, int epicId) {
         switch (taskType) {
             case TaskType.TASK:
                 Task task = new Task(taskName, taskDescription, taskStatus, taskStartTime, taskDuration);
@@ -215,7 +177,7 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
             case TaskType.SUBTASK:
                 SubTask subTask = new SubTask(taskName, taskDescription, taskStatus, taskStartTime, taskDuration);
                 subTask.setId(taskId);
-                subTask.setEpicId(Integer.parseInt(taskData[7]));
+                subTask.setEpicId(epicId);
                 return subTask;
             default:
                 throw new IllegalArgumentException("Ошибка преобразования строки в задачу: неизвестный " +
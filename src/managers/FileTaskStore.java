@@ -0,0 +1,640 @@
+package managers;
+
+import enums.SaveMode;
+import enums.SyncMode;
+import enums.TaskType;
+import exceptions.ManagerSaveException;
+import tasks.Task;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+
+// Хранилище в файлах FileBackedTaskManager: снимок (.csv, двоичный .bin или сжатый .binz) либо файл со слотами
+// (.slots), который принимает только изменившиеся записи. Режим записи задает SaveMode: в SNAPSHOT каждая
+// операция переписывает снимок, в JOURNAL ее изменения дописываются строками журнала и время от времени
+// переносятся в снимок фоновым сжатием, в WRITE_BEHIND снимок пишется отложенно через WriteBehindSaver.
+// В режимах JOURNAL и WRITE_BEHIND записи снимка хранятся закодированными по id, поэтому неизменившиеся задачи
+// заново не кодируются. В режиме SNAPSHOT хранятся только ссылки на задачи менеджера: снимок кодируется целиком
+// при записи и пишется поверх файла, а с SyncMode EACH или GROUP - через временный файл со сбросом на диск.
+// В режиме JOURNAL apply только отдает операцию журналу, а дождаться ее записи на диск можно через takeCommit
+// уже без блокировки, под которой менеджер вызывал apply, - так параллельные писатели делят один force
+class FileTaskStore implements TaskStore {
+    static final char REMOVED_PREFIX = '-'; // запись журнала об удалении: -id
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final byte[] REMOVED_RECORD = new byte[0]; // отметка удаления в dirtyRecords
+
+    private final File file;
+    private final SaveMode saveMode;
+    private final SyncMode syncMode;
+    private final boolean binary;
+    private final boolean slotted;
+    private final boolean empty; // файл создан пустым: прежние журналы и счетчик id к нему не относятся
+    private final boolean keepRecords; // записи снимка хранятся закодированными (кроме .slots)
+    private final StringBuilder operationRecords = new StringBuilder(); // записи журнала текущей операции
+    private final Object compactionLock = new Object(); // сжатия идут по одному
+    // записи снимка по id (кроме .slots): версия берется под монитором хранилища, а пишется без него
+    private PersistentIntMap<byte[]> records = PersistentIntMap.empty();
+    private final SortedIntObjectMap<Task> tasks = new SortedIntObjectMap<>(); // задачи снимка без keepRecords
+    private IntObjectMap<byte[]> dirtyRecords = new IntObjectMap<>(); // изменения после записи в слоты по id
+    private IntObjectMap<byte[]> writingRecords = new IntObjectMap<>(); // изменения, которые пишутся в слоты
+    private GroupCommitLog journal; // открыт только в режиме JOURNAL
+    private WriteBehindSaver writeBehind; // работает только в режиме WRITE_BEHIND
+    private SlottedTaskFile slots; // открыт только для файла .slots
+    private Commit lastCommit = Commit.NONE;
+    private int journalRecords; // записей в журнале после последнего сжатия
+    private int compactionThreshold = FileBackedTaskManager.DEFAULT_COMPACTION_THRESHOLD;
+    private Thread compactor;
+    private int savedHighWaterMark;
+
+    FileTaskStore(File file, SaveMode saveMode, SyncMode syncMode, boolean empty) {
+        this(file, saveMode, syncMode, empty, saveMode != SaveMode.SNAPSHOT);
+    }
+
+    FileTaskStore(File file, SaveMode saveMode, SyncMode syncMode, boolean empty, boolean keepRecords) {
+        this.file = file;
+        this.saveMode = saveMode;
+        this.syncMode = syncMode;
+        this.binary = isBinary(file);
+        this.slotted = isSlotted(file, saveMode);
+        this.empty = empty;
+        this.keepRecords = keepRecords && !slotted;
+    }
+
+    // восстановление: последний снимок, поверх него отложенный журнал незавершенного сжатия и журнал.
+    // Загрузка не в режиме JOURNAL и загрузка после незавершенного сжатия переносят журналы в новый снимок
+    // и удаляют их
+    @Override
+    public void load(Consumer<Task> action) {
+        try {
+            if (slotted) {
+                slots = SlottedTaskFile.open(file.toPath(), action);
+            } else if (!empty) {
+                SortedIntObjectMap<Task> loaded = readRecords(file);
+                for (Iterator<Task> it = loaded.valuesAfter(0); it.hasNext(); ) {
+                    Task task = it.next();
+                    if (keepRecords) {
+                        records = records.put(task.getId(), encodeRecord(file, task));
+                    } else {
+                        tasks.put(task.getId(), task);
+                    }
+                    action.accept(task);
+                }
+                File journalFile = journalFile(file);
+                File compactingFile = compactingFile(file);
+                if (compactingFile.exists() || (saveMode != SaveMode.JOURNAL && journalFile.exists())) {
+                    // без keepRecords записи кодируются только здесь и сразу пишутся в файл
+                    replaceSnapshot(file, keepRecords ? records.values()
+                            : () -> loaded.values().stream().map(task -> encodeRecord(file, task)).iterator());
+                    Files.deleteIfExists(compactingFile.toPath());
+                    Files.deleteIfExists(journalFile.toPath());
+                }
+            }
+            if (!empty) {
+                savedHighWaterMark = readHighWaterMark(file);
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка загрузки из файла автосохранения: " + e.getMessage());
+        }
+        if (saveMode == SaveMode.JOURNAL) {
+            journal = openJournal(!empty); // журнал от прежнего содержимого к пустому файлу не относится
+        } else if (saveMode == SaveMode.WRITE_BEHIND) {
+            writeBehind = new WriteBehindSaver(this::writeBehindSnapshot);
+        }
+    }
+
+    @Override
+    public int highWaterMark() {
+        return savedHighWaterMark;
+    }
+
+    @Override
+    public synchronized void saveHighWaterMark(int highWaterMark) {
+        if (highWaterMark > savedHighWaterMark) {
+            writeHighWaterMark(file, highWaterMark);
+            savedHighWaterMark = highWaterMark;
+        }
+    }
+
+    // в режиме JOURNAL каждое изменение - одна строка журнала в формате CSV, а для снимка CSV
+    // она же становится записью снимка
+    @Override
+    public synchronized void apply(List<TaskChange> changes) {
+        for (TaskChange change : changes) {
+            byte[] record = null; // null - задача удалена
+            if (saveMode == SaveMode.JOURNAL) {
+                int recordStart = operationRecords.length();
+                writeJournalRecord(change, operationRecords);
+                journalRecords++;
+                if (change instanceof TaskChange.Saved && !binary) {
+                    record = operationRecords.substring(recordStart).getBytes(StandardCharsets.UTF_8);
+                }
+            }
+            if (!slotted && !keepRecords) {
+                switch (change) {
+                    case TaskChange.Saved saved -> tasks.put(saved.id(), saved.task());
+                    case TaskChange.Removed removed -> tasks.remove(removed.id());
+                }
+                continue;
+            }
+            if (change instanceof TaskChange.Saved saved && record == null) {
+                record = slotted ? BinaryTaskCodec.encode(saved.task()) : encodeRecord(file, saved.task());
+            }
+            if (slotted) {
+                dirtyRecords.put(change.id(), record == null ? REMOVED_RECORD : record);
+            } else {
+                records = record == null ? records.remove(change.id()) : records.put(change.id(), record);
+            }
+        }
+        switch (saveMode) {
+            case JOURNAL -> {
+                try {
+                    lastCommit = new Commit(journal, journal.commit(operationRecords));
+                } finally {
+                    operationRecords.setLength(0);
+                }
+                if (journalRecords >= compactionThreshold && (compactor == null || !compactor.isAlive())) {
+                    startCompaction();
+                }
+            }
+            case WRITE_BEHIND -> writeBehind.markDirty();
+            case SNAPSHOT -> {
+                if (slotted) {
+                    writeChanges(takeChanges());
+                } else if (keepRecords) {
+                    writeSnapshot(records);
+                } else {
+                    writeTasks();
+                }
+            }
+        }
+    }
+
+    // операция, которую журналу отдал последний apply; вызывающий ждет ее записи после своей блокировки
+    synchronized Commit takeCommit() {
+        Commit commit = lastCommit;
+        lastCommit = Commit.NONE;
+        return commit;
+    }
+
+    @Override
+    public synchronized Optional<Task> find(int id) {
+        byte[] record;
+        if (slotted) {
+            record = dirtyRecords.containsKey(id) ? dirtyRecords.get(id) : writingRecords.get(id);
+            if (record == null) {
+                try {
+                    record = slots.read(id);
+                } catch (IOException e) {
+                    throw new ManagerSaveException("Ошибка чтения файла задач: " + e.getMessage());
+                }
+            }
+        } else if (keepRecords) {
+            record = records.get(id);
+        } else {
+            Task task = tasks.get(id); // копия, как и у остальных режимов: задачи менеджера изменяемы
+            record = task == null ? null : BinaryTaskCodec.encode(task);
+        }
+        if (record == null || record == REMOVED_RECORD) {
+            return Optional.empty();
+        }
+        return Optional.of(slotted || binary || !keepRecords
+                ? BinaryTaskCodec.decodeRecord(record, 0)
+                : CsvTaskCodec.read(record, 0, record.length - 1));
+    }
+
+    // Все изменения, сделанные до вызова, оказываются на диске: в режиме WRITE_BEHIND снимок пишется
+    // немедленно и вызов ждет записи, в режиме JOURNAL журнал сбрасывается через FileChannel.force.
+    // В режиме SNAPSHOT файл уже перезаписан каждой операцией
+    @Override
+    public void flush() {
+        if (writeBehind != null) {
+            writeBehind.flush();
+        } else if (saveMode == SaveMode.JOURNAL) {
+            GroupCommitLog log;
+            synchronized (this) {
+                log = journal;
+            }
+            log.sync();
+        }
+    }
+
+    // дожидается фонового сжатия и отложенной записи, затем журнал дописывает оставшиеся записи
+    // и сбрасывает их на диск
+    @Override
+    public void close() {
+        if (writeBehind != null) {
+            writeBehind.close();
+        }
+        if (slots != null) {
+            slots.close();
+        }
+        Thread running;
+        synchronized (this) {
+            running = compactor;
+        }
+        if (running != null) {
+            try {
+                running.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (journal != null) {
+                journal.close();
+            }
+        }
+    }
+
+    File file() {
+        return file;
+    }
+
+    // число закодированных записей снимка в памяти
+    synchronized int recordCount() {
+        return records.size();
+    }
+
+    synchronized void setCompactionThreshold(int compactionThreshold) {
+        if (compactionThreshold < 1) {
+            throw new IllegalArgumentException("Порог сжатия журнала должен быть положительным");
+        }
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    void setWriteBehindLimits(long delayMillis, int maxChanges) {
+        if (writeBehind != null) {
+            writeBehind.setLimits(delayMillis, maxChanges);
+        }
+    }
+
+    // Сжатие журнала: под монитором хранилища берется версия записей снимка на момент последней операции,
+    // а журнал с операциями до нее откладывается в .compacting; дальше писатели пишут в новый пустой журнал.
+    // Снимок пишется без монитора во временный файл и подменяет прежний переименованием, после чего
+    // отложенный журнал удаляется. Если сбой случился раньше, загрузка применит .compacting и журнал
+    // поверх того снимка, который успел оказаться на месте, - повторное применение записей безвредно
+    void compactJournal() {
+        if (saveMode != SaveMode.JOURNAL) {
+            return;
+        }
+        synchronized (compactionLock) {
+            PersistentIntMap<byte[]> version;
+            synchronized (this) {
+                if (journalRecords == 0) {
+                    return;
+                }
+                version = records;
+                rotateJournal();
+            }
+            try {
+                replaceSnapshot(file, version.values());
+                Files.delete(compactingFile(file).toPath());
+            } catch (IOException e) {
+                throw new ManagerSaveException("Ошибка сжатия журнала: " + e.getMessage());
+            }
+        }
+    }
+
+    // изменения после прошлой записи в слоты; пока они пишутся, find находит их в writingRecords
+    private synchronized List<RecordChange> takeChanges() {
+        List<RecordChange> changes = new ArrayList<>(dirtyRecords.size());
+        dirtyRecords.forEach((id, record) -> changes.add(new RecordChange(id, record)));
+        writingRecords = dirtyRecords;
+        dirtyRecords = new IntObjectMap<>();
+        return changes;
+    }
+
+    // Стоимость записи пропорциональна числу изменений, а не числу задач. Если запись не удалась,
+    // записи снова помечаются измененными (если их не изменили заново), чтобы следующая запись их повторила
+    private void writeChanges(List<RecordChange> changes) {
+        try {
+            for (RecordChange change : changes) {
+                if (change.record() == REMOVED_RECORD) {
+                    slots.remove(change.id());
+                } else {
+                    slots.write(change.id(), change.record());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                for (RecordChange change : changes) {
+                    if (!dirtyRecords.containsKey(change.id())) {
+                        dirtyRecords.put(change.id(), change.record());
+                    }
+                }
+            }
+            throw new ManagerSaveException("Ошибка автосохранения: " + e.getMessage());
+        } finally {
+            synchronized (this) {
+                writingRecords = new IntObjectMap<>();
+            }
+        }
+    }
+
+    private record RecordChange(int id, byte[] record) { // record == REMOVED_RECORD - задача удалена
+    }
+
+    // вызывается потоком отложенного сохранения
+    private void writeBehindSnapshot() {
+        if (slotted) {
+            writeChanges(takeChanges());
+            return;
+        }
+        PersistentIntMap<byte[]> version;
+        synchronized (this) {
+            version = records;
+        }
+        writeSnapshot(version);
+    }
+
+    private void writeSnapshot(PersistentIntMap<byte[]> version) {
+        try {
+            replaceSnapshot(file, version.values());
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка автосохранения: " + e.getMessage());
+        }
+    }
+
+    // Снимок режима SNAPSHOT кодируется заново из задач: сначала задачи, затем эпики и подзадачи, каждые по id.
+    // Без сброса на диск файл пишется на месте, как и раньше; сжатый снимок всегда пишется через временный файл,
+    // чтобы сбой не оставил его без оглавления
+    private void writeTasks() {
+        List<Task> ordered = new ArrayList<>(tasks.size());
+        for (TaskType type : new TaskType[]{TaskType.TASK, TaskType.EPIC, TaskType.SUBTASK}) {
+            for (Task task : tasks.values()) {
+                if (task.getTaskType() == type) {
+                    ordered.add(task);
+                }
+            }
+        }
+        try {
+            if (syncMode != SyncMode.OS_BUFFERED || isCompressed(file)) {
+                replaceSnapshot(file, () -> ordered.stream().map(task -> encodeRecord(file, task)).iterator());
+            } else if (binary) {
+                BinaryTaskCodec codec = new BinaryTaskCodec();
+                ordered.forEach(codec::write);
+                try (OutputStream out = new FileOutputStream(file)) {
+                    out.write(BinaryTaskCodec.header());
+                    out.write(codec.toByteArray());
+                }
+            } else {
+                try (BufferedWriter bw = new BufferedWriter(new FileWriter(file, StandardCharsets.UTF_8))) {
+                    bw.write(FileBackedTaskManager.HEAD_LINE_IN_AUTOSAVE_FILE);
+                    bw.newLine();
+                    StringBuilder line = new StringBuilder();
+                    for (Task task : ordered) {
+                        line.setLength(0);
+                        CsvTaskCodec.write(task, line);
+                        bw.append(line);
+                        bw.newLine();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка автосохранения: " + e.getMessage());
+        }
+    }
+
+    // ошибка фонового сжатия данных не теряет: журнал остается на месте и сжимается в следующий раз
+    private void startCompaction() {
+        compactor = new Thread(this::compactJournal, "journal-compactor");
+        compactor.setDaemon(true);
+        compactor.start();
+    }
+
+    // вызывается под монитором хранилища. Отложенный журнал может остаться от неудачного сжатия -
+    // тогда текущий журнал дописывается к нему, иначе просто переименовывается
+    private void rotateJournal() {
+        journal.close();
+        Path journalPath = journalFile(file).toPath();
+        Path compactingPath = compactingFile(file).toPath();
+        try {
+            if (Files.exists(compactingPath)) {
+                Files.write(compactingPath, Files.readAllBytes(journalPath), StandardOpenOption.APPEND);
+                Files.delete(journalPath);
+            } else {
+                Files.move(journalPath, compactingPath, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка сжатия журнала: " + e.getMessage());
+        } finally {
+            journal = openJournal(true);
+        }
+        journalRecords = 0;
+    }
+
+    private GroupCommitLog openJournal(boolean append) {
+        return new GroupCommitLog(journalFile(file).toPath(), syncMode, GroupCommitLog.DEFAULT_GROUP_COMMIT_MILLIS,
+                append);
+    }
+
+    // операция в журнале; номер относится к журналу, открытому на момент фиксации, - сжатие его заменяет
+    record Commit(GroupCommitLog log, long ticket) {
+        static final Commit NONE = new Commit(null, 0);
+
+        void awaitDurable() {
+            if (log != null) {
+                log.awaitDurable(ticket);
+            }
+        }
+    }
+
+    // строка журнала: задача в формате CSV или -id для удаления, с переводом строки
+    static void writeJournalRecord(TaskChange change, StringBuilder records) {
+        switch (change) {
+            case TaskChange.Saved saved -> CsvTaskCodec.write(saved.task(), records);
+            case TaskChange.Removed removed -> records.append(REMOVED_PREFIX).append(removed.id());
+        }
+        records.append('\n');
+    }
+
+    // счетчик id хранится рядом с файлом задач; 0 - файла счетчика нет
+    static int readHighWaterMark(File file) throws IOException {
+        File highWaterMarkFile = highWaterMarkFile(file);
+        if (!highWaterMarkFile.exists()) {
+            return 0;
+        }
+        String value = Files.readString(highWaterMarkFile.toPath()).trim();
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ManagerSaveException("Файл счетчика id поврежден: \"" + value + "\"");
+        }
+    }
+
+    // как и снимок, счетчик пишется во временный файл и атомарно подменяет прежний:
+    // сбой посреди записи не оставляет пустой или оборванный файл
+    static void writeHighWaterMark(File file, int highWaterMark) {
+        File highWaterMarkFile = highWaterMarkFile(file);
+        Path temp = Path.of(highWaterMarkFile.getPath() + TEMP_SUFFIX);
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp.toFile())) {
+                out.write(String.valueOf(highWaterMark).getBytes(StandardCharsets.US_ASCII));
+                out.getFD().sync();
+            }
+            Files.move(temp, highWaterMarkFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка сохранения счетчика id: " + e.getMessage());
+        }
+    }
+
+    static File highWaterMarkFile(File file) {
+        return new File(file.getPath() + FileBackedTaskManager.HIGH_WATER_MARK_SUFFIX);
+    }
+
+    static File journalFile(File file) {
+        return new File(file.getPath() + FileBackedTaskManager.JOURNAL_SUFFIX);
+    }
+
+    static File compactingFile(File file) {
+        return new File(file.getPath() + FileBackedTaskManager.JOURNAL_SUFFIX
+                + FileBackedTaskManager.COMPACTING_SUFFIX);
+    }
+
+    // сжатый снимок хранит те же записи BinaryTaskCodec, что и .bin
+    static boolean isBinary(File file) {
+        return file.getName().endsWith(FileBackedTaskManager.BINARY_EXTENSION) || isCompressed(file);
+    }
+
+    private static boolean isCompressed(File file) {
+        return file.getName().endsWith(FileBackedTaskManager.COMPRESSED_EXTENSION);
+    }
+
+    // журнал пишет строки по одной задаче, а файл со слотами и так принимает только изменения
+    private static boolean isSlotted(File file, SaveMode saveMode) {
+        boolean slotted = file.getName().endsWith(FileBackedTaskManager.SLOTTED_EXTENSION);
+        if (slotted && saveMode == SaveMode.JOURNAL) {
+            throw new ManagerSaveException("Файл .slots не поддерживает режим JOURNAL");
+        }
+        return slotted;
+    }
+
+    // Новый снимок из готовых записей целиком сбрасывается на диск во временный файл и атомарно подменяет
+    // прежний. Формат записей должен совпадать с форматом файла: строки CSV с переводом строки или BinaryTaskCodec
+    // (для .binz записи сжимаются блоками по мере записи)
+    static void replaceSnapshot(File file, Iterable<byte[]> records) throws IOException {
+        Path temp = Path.of(file.getPath() + TEMP_SUFFIX);
+        try (FileOutputStream out = new FileOutputStream(temp.toFile());
+             BufferedOutputStream bos = new BufferedOutputStream(out)) {
+            if (isCompressed(file)) {
+                CompressedSnapshot.write(bos, records);
+            } else {
+                bos.write(snapshotHeader(file));
+                for (byte[] record : records) {
+                    bos.write(record);
+                }
+            }
+            bos.flush();
+            out.getFD().sync();
+        }
+        Files.move(temp, file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static byte[] snapshotHeader(File file) {
+        return isBinary(file)
+                ? BinaryTaskCodec.header()
+                : (FileBackedTaskManager.HEAD_LINE_IN_AUTOSAVE_FILE + '\n').getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] encodeRecord(File file, Task task) {
+        return isBinary(file)
+                ? BinaryTaskCodec.encode(task)
+                : (FileBackedTaskManager.taskToString(task) + '\n').getBytes(StandardCharsets.UTF_8);
+    }
+
+    // снимок, поверх него отложенный журнал незавершенного сжатия и журнал
+    static SortedIntObjectMap<Task> readRecords(File file) throws IOException {
+        SortedIntObjectMap<Task> records = new SortedIntObjectMap<>();
+        readSnapshot(file, records);
+        File compactingFile = compactingFile(file);
+        if (compactingFile.exists()) {
+            replayJournal(compactingFile, records);
+        }
+        File journalFile = journalFile(file);
+        if (journalFile.exists()) {
+            replayJournal(journalFile, records);
+        }
+        return records;
+    }
+
+    // снимка может еще не быть: в режиме JOURNAL он появляется только после первого сжатия
+    private static void readSnapshot(File file, SortedIntObjectMap<Task> records) throws IOException {
+        if (!file.exists() || file.length() == 0) {
+            return;
+        }
+        if (isCompressed(file)) {
+            CompressedSnapshot.read(file.toPath()).forEach(task -> records.put(task.getId(), task));
+        } else if (isBinary(file)) {
+            BinaryTaskCodec.decode(Files.readAllBytes(file.toPath()), task -> records.put(task.getId(), task));
+        } else {
+            for (Task task : CsvSnapshotLoader.load(file.toPath())) {
+                records.put(task.getId(), task);
+            }
+        }
+    }
+
+    // более поздняя запись о задаче заменяет прежнюю, запись об удалении убирает задачу;
+    // возвращает число записей журнала
+    static int replayJournal(File journalFile, SortedIntObjectMap<Task> records) throws IOException {
+        return replayJournal(journalFile, records, (task, offset) -> {
+        });
+    }
+
+    // saved получает каждую запись о задаче со смещением ее строки в файле журнала
+    static int replayJournal(File journalFile, SortedIntObjectMap<Task> records, ObjLongConsumer<Task> saved)
+            throws IOException {
+        truncateTornRecord(journalFile);
+        int[] count = {0};
+        CsvSnapshotLoader.forEachLine(journalFile.toPath(), (offset, line, from, to) -> {
+            if (line[from] == REMOVED_PREFIX) {
+                records.remove(Integer.parseInt(new String(line, from + 1, to - from - 1, StandardCharsets.US_ASCII)));
+            } else {
+                Task task = CsvTaskCodec.read(line, from, to);
+                records.put(task.getId(), task);
+                saved.accept(task, offset);
+            }
+            count[0]++;
+        });
+        return count[0];
+    }
+
+    // запись, оборванная при сбое, не заканчивается переводом строки: она отбрасывается,
+    // чтобы следующая запись не дописалась к ее хвосту
+    private static void truncateTornRecord(File journalFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            long length = channel.size();
+            ByteBuffer lastByte = ByteBuffer.allocate(1);
+            while (length > 0) {
+                lastByte.clear();
+                channel.read(lastByte, length - 1);
+                if (lastByte.get(0) == '\n') {
+                    break;
+                }
+                length--;
+            }
+            if (length < channel.size()) {
+                channel.truncate(length);
+            }
+        }
+    }
+}
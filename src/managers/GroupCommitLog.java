@@ -0,0 +1,217 @@
+package managers;
+
+import enums.SyncMode;
+import exceptions.ManagerSaveException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Журнал с групповой фиксацией. commit кладет записи операции в общий буфер и выдает номер операции,
+// awaitDurable ждет, пока операция с этим номером окажется на диске.
+// В режиме GROUP буфер забирает один поток-сбрасыватель: все операции, накопленные к этому моменту,
+// уходят одной записью в файл и одним FileChannel.force, после чего ждущие потоки просыпаются.
+// В режимах EACH и OS_BUFFERED буфер пишется в commit на потоке вызывающего.
+// После первой ошибки записи журнал больше ничего не принимает и не дописывает: иначе операции,
+// о сбое которых вызывающий уже узнал, или следующие за потерянной группой попали бы в файл.
+class GroupCommitLog implements AutoCloseable {
+    static final long DEFAULT_GROUP_COMMIT_MILLIS = 1;
+
+    private final FileChannel channel;
+    private final SyncMode syncMode;
+    private final long groupCommitMillis;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushed = lock.newCondition();
+    private final Condition work = lock.newCondition();
+    private final Thread flusher;
+    private StringBuilder pending = new StringBuilder();
+    private long committed; // номер последней закрытой операции
+    private long durable; // номер последней операции, записанной в файл (и сброшенной на диск, если нужно)
+    private IOException failure;
+    private boolean closed;
+
+    GroupCommitLog(Path path, SyncMode syncMode, long groupCommitMillis, boolean append) {
+        this.syncMode = syncMode;
+        this.groupCommitMillis = groupCommitMillis;
+        try {
+            channel = append
+                    ? FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)
+                    : FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка открытия журнала: " + e.getMessage());
+        }
+        if (syncMode == SyncMode.GROUP) {
+            flusher = new Thread(this::runFlusher, "journal-group-commit");
+            flusher.setDaemon(true);
+            flusher.start();
+        } else {
+            flusher = null;
+        }
+    }
+
+    // записи одной операции попадают в буфер целиком и получают номер операции;
+    // в режимах EACH и OS_BUFFERED они сразу пишутся в файл
+    long commit(CharSequence records) {
+        lock.lock();
+        try {
+            if (failure != null) {
+                throw new ManagerSaveException("Ошибка записи в журнал: " + failure.getMessage());
+            }
+            pending.append(records);
+            long ticket = ++committed;
+            if (syncMode == SyncMode.GROUP) {
+                work.signal();
+            } else {
+                writePending(syncMode == SyncMode.EACH);
+            }
+            return ticket;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void awaitDurable(long ticket) {
+        lock.lock();
+        try {
+            while (durable < ticket && failure == null) {
+                flushed.awaitUninterruptibly();
+            }
+            if (failure != null) {
+                throw new ManagerSaveException("Ошибка записи в журнал: " + failure.getMessage());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // все закрытые к этому моменту операции оказываются на диске, в том числе в режиме OS_BUFFERED
+    void sync() {
+        long ticket;
+        lock.lock();
+        try {
+            ticket = committed;
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(ticket);
+        if (syncMode == SyncMode.OS_BUFFERED) {
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                throw new ManagerSaveException("Ошибка записи в журнал: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            work.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            if (flusher != null) {
+                flusher.join();
+            }
+            lock.lock();
+            try {
+                if (failure == null) {
+                    writePending(syncMode != SyncMode.OS_BUFFERED);
+                }
+            } finally {
+                lock.unlock();
+                channel.close();
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка закрытия журнала: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // вызывается под lock
+    private void writePending(boolean force) {
+        try {
+            if (!pending.isEmpty()) {
+                write(pending);
+                pending.setLength(0);
+            }
+            if (force) {
+                channel.force(false);
+            }
+            durable = committed;
+        } catch (IOException e) {
+            failure = e;
+            throw new ManagerSaveException("Ошибка записи в журнал: " + e.getMessage());
+        } finally {
+            flushed.signalAll();
+        }
+    }
+
+    // Сбрасыватель просыпается на первой незаписанной операции и еще groupCommitMillis собирает группу.
+    // Пока он пишет и ждет force, пишущие потоки заполняют новый буфер - это следующая группа
+    private void runFlusher() {
+        while (true) {
+            StringBuilder batch;
+            long batchEnd;
+            lock.lock();
+            try {
+                while (committed == durable && !closed) {
+                    work.await();
+                }
+                if (closed || failure != null) {
+                    return;
+                }
+                long linger = TimeUnit.MILLISECONDS.toNanos(groupCommitMillis);
+                while (linger > 0 && !closed) {
+                    linger = work.awaitNanos(linger);
+                }
+                batch = pending;
+                batchEnd = committed;
+                pending = new StringBuilder();
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            IOException error = null;
+            try {
+                write(batch);
+                channel.force(false);
+            } catch (IOException e) {
+                error = e;
+            }
+            lock.lock();
+            try {
+                if (error != null) {
+                    failure = error;
+                } else {
+                    durable = batchEnd;
+                }
+                flushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void write(CharSequence records) throws IOException {
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(records.toString());
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package managers;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Генератор id, принадлежащий одному менеджеру. Общий счетчик выдает потокам блоки id в аренду,
+// дальше поток берет id из своего блока без обращения к счетчику. Владелец после выдачи id сверяет
+// getHighWaterMark с сохраненной границей, чтобы не выдавать те же id после перезапуска.
+public class IdGenerator {
+    public static final int DEFAULT_BLOCK_SIZE = 64;
+
+    private final AtomicInteger highWaterMark = new AtomicInteger();
+    private final int blockSize;
+    private final ThreadLocal<IdBlock> currentBlock = new ThreadLocal<>();
+    private volatile int reservedUpTo; // id до этой границы заняты загруженными задачами
+
+    public IdGenerator(int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Размер блока id должен быть положительным");
+        }
+        this.blockSize = blockSize;
+    }
+
+    public int nextId() {
+        IdBlock block = currentBlock.get();
+        if (block == null || !block.hasNext() || block.next <= reservedUpTo) {
+            block = leaseBlock(blockSize);
+            currentBlock.set(block);
+        }
+        return block.next();
+    }
+
+    // блок из size последовательных id, которые больше никому не будут выданы
+    public IdBlock leaseBlock(int size) {
+        int last = highWaterMark.addAndGet(size);
+        return new IdBlock(last - size + 1, last);
+    }
+
+    // сдвиг границы при загрузке задач, уже имеющих id
+    public void advanceTo(int id) {
+        reservedUpTo = highWaterMark.accumulateAndGet(id, Math::max);
+    }
+
+    public int getHighWaterMark() {
+        return highWaterMark.get();
+    }
+
+    public static class IdBlock {
+        private final int last;
+        private int next;
+
+        IdBlock(int first, int last) {
+            this.next = first;
+            this.last = last;
+        }
+
+        public boolean hasNext() {
+            return next <= last;
+        }
+
+        public int next() {
+            return next++;
+        }
+    }
+}
@@ -4,103 +4,169 @@ import tasks.Task;
 
 import java.util.*;
 
+// История просмотров ограниченного размера с вытеснением давно просмотренных задач (LRU).
+// Двусвязный список хранится в параллельных массивах prev[]/next[]/taskIds[] по номерам ячеек,
+// поэтому просмотр не создает узлов. Ячейку по id задачи находит встроенная хеш-таблица
+// с открытой адресацией, в которой лежат номера ячеек + 1 (0 - пусто).
 public class InMemoryHistoryManager implements HistoryManager {
-    private final Map<Integer, Node> historyViews = new HashMap<>();
-    private Node lastNode;
-    private Node firstNode;
+    public static final int DEFAULT_CAPACITY = 1000;
+    private static final int NONE = -1;
+
+    private final int capacity;
+    private final int[] prev;
+    private final int[] next; // для свободных ячеек - следующая свободная
+    private final int[] taskIds;
+    private final Task[] tasks;
+    private final int[] index;
+    private final int indexShift;
+    private int first = NONE; // давно просмотренная задача, вытесняется первой
+    private int last = NONE;
+    private int free;
+    private int size;
+    private List<Task> history = List.of(); // null, если история изменилась после чтения
+
+    public InMemoryHistoryManager() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public InMemoryHistoryManager(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Размер истории должен быть положительным");
+        }
+        this.capacity = capacity;
+        prev = new int[capacity];
+        next = new int[capacity];
+        taskIds = new int[capacity];
+        tasks = new Task[capacity];
+        for (int slot = 0; slot < capacity; slot++) {
+            next[slot] = slot + 1 < capacity ? slot + 1 : NONE;
+        }
+        int indexBits = 32 - Integer.numberOfLeadingZeros(capacity * 2 - 1); // заполнение не больше половины
+        index = new int[1 << indexBits];
+        indexShift = 32 - indexBits;
+    }
 
     @Override
     public void addToHistory(Task task) {
         if (task != null) {
             int taskId = task.getId();
-            Node newNode = new Node(task);
-
-            if (historyViews.containsKey(taskId)) {
-                remove(taskId);
-            }
-            if (historyViews.isEmpty()) {
-                firstNode = newNode;
+            int slot = findSlot(taskId);
+            if (slot != NONE) {
+                unlink(slot);
             } else {
-                lastNode.head = newNode;
-                newNode.tail = lastNode;
+                if (size == capacity) {
+                    release(first);
+                }
+                slot = free;
+                free = next[slot];
+                taskIds[slot] = taskId;
+                putIndex(slot);
+                size++;
             }
-            lastNode = newNode;
-
-            historyViews.put(taskId, newNode);
+            tasks[slot] = task;
+            linkLast(slot);
+            history = null;
         }
     }
 
     @Override
     public List<Task> getHistory() {
-        List<Task> result = new LinkedList<>();
-        Node node = firstNode;
-
-        while (node != null) {
-            result.add(node.task);
-            node = node.head;
+        List<Task> result = history;
+        if (result == null) {
+            List<Task> ordered = new ArrayList<>(size);
+            for (int slot = first; slot != NONE; slot = next[slot]) {
+                ordered.add(tasks[slot]);
+            }
+            result = Collections.unmodifiableList(ordered);
+            history = result;
         }
         return result;
     }
 
     @Override
     public void remove(int id) {
-
-        if (!historyViews.containsKey(id)) {
-            return;
+        int slot = findSlot(id);
+        if (slot != NONE) {
+            release(slot);
+            history = null;
         }
-        unlinkNode(historyViews.get(id));
-
-        if (firstNode.equals(historyViews.get(id))) {
-            firstNode = firstNode.head;
-        }
-        historyViews.remove(id);
+    }
 
-        if (historyViews.size() == 1) {
-            firstNode = lastNode;
-        }
+    public int getCapacity() {
+        return capacity;
     }
 
-    private void unlinkNode(Node node) {
-        Node tail = node.tail;
-        Node head = node.head;
+    private void release(int slot) {
+        unlink(slot);
+        removeIndex(slot);
+        tasks[slot] = null;
+        next[slot] = free;
+        free = slot;
+        size--;
+    }
 
-        if (tail != null) {
-            tail.head = head;
+    private void linkLast(int slot) {
+        prev[slot] = last;
+        next[slot] = NONE;
+        if (last == NONE) {
+            first = slot;
+        } else {
+            next[last] = slot;
         }
+        last = slot;
+    }
 
-        if (head != null) {
-            head.tail = tail;
+    private void unlink(int slot) {
+        if (prev[slot] == NONE) {
+            first = next[slot];
+        } else {
+            next[prev[slot]] = next[slot];
+        }
+        if (next[slot] == NONE) {
+            last = prev[slot];
+        } else {
+            prev[next[slot]] = prev[slot];
         }
     }
 
-    private static class Node {
-        final Task task;
-        Node tail;
-        Node head;
-
-        public Node(Task task) {
-            this.task = task;
-            this.tail = null;
-            this.head = null;
+    private int findSlot(int taskId) {
+        int mask = index.length - 1;
+        for (int i = home(taskId); index[i] != 0; i = (i + 1) & mask) {
+            if (taskIds[index[i] - 1] == taskId) {
+                return index[i] - 1;
+            }
         }
+        return NONE;
     }
-}
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
 
+    private void putIndex(int slot) {
+        int mask = index.length - 1;
+        int i = home(taskIds[slot]);
+        while (index[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        index[i] = slot + 1;
+    }
 
+    // удаление без "надгробий", как в IntObjectMap: следующие записи цепочки сдвигаются назад
+    private void removeIndex(int slot) {
+        int mask = index.length - 1;
+        int i = home(taskIds[slot]);
+        while (index[i] != slot + 1) {
+            i = (i + 1) & mask;
+        }
+        int hole = i;
+        for (int j = (hole + 1) & mask; index[j] != 0; j = (j + 1) & mask) {
+            int home = home(taskIds[index[j] - 1]);
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                index[hole] = index[j];
+                hole = j;
+            }
+        }
+        index[hole] = 0;
+    }
 
+    private int home(int taskId) {
+        return (taskId * 0x9E3779B9) >>> indexShift;
+    }
+}
@@ -9,206 +9,432 @@ import tasks.*;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Stream;
 
 
 public class InMemoryTaskManager implements TaskManager {
-    protected static int defaultId = 0; // для метода генерации id объектов при добавлении в менеджер
+    protected final IdGenerator idGenerator = new IdGenerator(IdGenerator.DEFAULT_BLOCK_SIZE);
+    private volatile int leasedUpTo; // граница выданных блоков id, уже переданная в хранилище
+
+    protected final SortedIntObjectMap<Task> tasksList = new SortedIntObjectMap<>();
+    protected final SortedIntObjectMap<Epic> epicsList = new SortedIntObjectMap<>();
+    protected final SortedIntObjectMap<SubTask> subTasksList = new SortedIntObjectMap<>();
+    private final NavigableMap<StartKey, Task> prioritizedTasks = new TreeMap<>(); // id различает задачи с одним временем
+    private volatile List<Task> prioritizedSnapshot = List.of(); // null, если расписание изменилось после чтения
+    private final IntervalIndex scheduleIndex = new IntervalIndex(); // интервалы задач и подзадач для isOverlap
+    private final TaskQueryIndex queryIndex = new TaskQueryIndex(); // статусы и время начала для запросов
+
+    private final HistoryManager historyManager;
+    private final TaskStore store; // null - задачи только в памяти
+    private final TaskTextCache textCache; // null - названия и описания задач хранятся в памяти
+    private final List<TaskChange> pendingChanges = new ArrayList<>(); // изменения текущей операции для store
+
+    public InMemoryTaskManager() {
+        this(Managers.getDefaultHistory());
+    }
+
+    // задачи загружаются из хранилища, дальше каждая изменяющая операция передает в него свои изменения
+    public InMemoryTaskManager(TaskStore store) {
+        this(Managers.getDefaultHistory(), store, null);
+        load();
+    }
 
-    protected final HashMap<Integer, Task> tasksList = new HashMap<>();
-    protected final HashMap<Integer, Epic> epicsList = new HashMap<>();
-    protected final HashMap<Integer, SubTask> subTasksList = new HashMap<>();
-    private final Set<Task> prioritizedTasks = new TreeSet<>(Comparator.comparing(Task::getTaskStartTime));
+    // Режим для текстов больше памяти: у задач в памяти остаются id, тип, статус, время и эпик, а название
+    // и описание читаются из хранилища (TaskStore.find) через LRU-кэш на textCacheSize задач.
+    // Расписание, проверка пересечений и поиск по статусу и времени по-прежнему работают только с памятью.
+    // Память экономится с LogTaskStore и BTreeTaskStore; CsvTaskStore держит строки снимка в памяти сам
+    public InMemoryTaskManager(TaskStore store, int textCacheSize) {
+        this(Managers.getDefaultHistory(), store, new TaskTextCache(store, textCacheSize));
+        load();
+    }
 
-    private final HistoryManager historyManager = Managers.getDefaultHistory();
+    protected InMemoryTaskManager(HistoryManager historyManager) {
+        this(historyManager, null, null);
+    }
+
+    private InMemoryTaskManager(HistoryManager historyManager, TaskStore store, TaskTextCache textCache) {
+        this.historyManager = historyManager;
+        this.store = store;
+        this.textCache = textCache;
+    }
 
     @Override
     public void addTask(Task task) {
-        if (!isOverlap(task)) {
-            task.setId(createNewId());
-            Task newTask = new Task(task);
-            tasksList.put(newTask.getId(), newTask);
-            syncTasksPriority();
-        }
+        mutate(() -> {
+            if (!isOverlap(task, 0)) {
+                task.setId(createNewId());
+                Task newTask = new Task(task);
+                tasksList.put(newTask.getId(), newTask);
+                schedule(newTask);
+                taskSaved(newTask);
+            }
+        });
     }
 
     @Override
     public void addEpic(Epic epic) {
-        if (!isOverlap(epic)) {
-            epic.setId(createNewId());
-            Epic newEpic = new Epic(epic);
-            epicsList.put(newEpic.getId(), newEpic);
-            syncTasksPriority();
-        }
+        mutate(() -> {
+            if (!isOverlap(epic, 0)) {
+                epic.setId(createNewId());
+                Epic newEpic = new Epic(epic);
+                newEpic.clearSubTasks(); // подзадачи привязываются к эпику только через addSubTask
+                epicsList.put(newEpic.getId(), newEpic);
+                taskSaved(newEpic);
+            }
+        });
     }
 
     @Override
     public void addSubTask(SubTask subTask, int epicId) {
-        if (!isOverlap(subTask)) {
-            if (epicsList.containsKey(epicId)) {
-                subTask.setId(createNewId());
-                subTask.setEpicId(epicId); // передача epicId
-
-                SubTask newSubTask = new SubTask(subTask);
-
-                subTasksList.put(newSubTask.getId(), newSubTask);
-                Epic epic = epicsList.get(epicId);
-                epic.getSubTasksIds().add(newSubTask.getId()); // добавляем id подзадачи в эпик
-                setEpicParameters(epic.getId());
-                syncTasksPriority();
-            } else {
-                throw new TaskCreateException("Для добавления подзадачи нужно указать существующий EpicID");
+        mutate(() -> {
+            if (!isOverlap(subTask, 0)) {
+                if (epicsList.containsKey(epicId)) {
+                    subTask.setId(createNewId());
+                    subTask.setEpicId(epicId); // передача epicId
+
+                    SubTask newSubTask = new SubTask(subTask);
+
+                    subTasksList.put(newSubTask.getId(), newSubTask);
+                    schedule(newSubTask);
+                    Epic epic = epicsList.get(epicId);
+                    epic.addSubTask(newSubTask); // добавляем подзадачу в эпик
+                    taskSaved(newSubTask);
+                    taskSaved(epic);
+                } else {
+                    throw new TaskCreateException("Для добавления подзадачи нужно указать существующий EpicID");
+                }
             }
-        }
+        });
     }
 
     @Override
-    public ArrayList<Task> getTasksList() {
+    public List<Task> getTasksList() {
         return new ArrayList<>(tasksList.values());
     }
 
     @Override
-    public ArrayList<Epic> getEpicsList() {
+    public List<Epic> getEpicsList() {
         return new ArrayList<>(epicsList.values());
     }
 
     @Override
-    public ArrayList<SubTask> getSubTasksList() {
+    public List<SubTask> getSubTasksList() {
         return new ArrayList<>(subTasksList.values());
     }
 
     @Override
-    public ArrayList<SubTask> getSubTasksListByEpic(int epicId) {
+    public List<SubTask> getSubTasksListByEpic(int epicId) {
+        Epic epic = epicsList.get(epicId);
+        if (epic == null) {
+            return new ArrayList<>();
+        }
+        List<SubTask> result = new ArrayList<>(epic.getSubTasksIds().size());
+        epic.getSubTasksIds().forEach(id -> result.add(subTasksList.get(id)));
+        return result;
+    }
+
+    @Override
+    public Iterator<Task> tasksAfter(int afterId) {
+        return tasksList.valuesAfter(afterId);
+    }
+
+    @Override
+    public Iterator<Epic> epicsAfter(int afterId) {
+        return epicsList.valuesAfter(afterId);
+    }
+
+    @Override
+    public Iterator<SubTask> subTasksAfter(int afterId) {
+        return subTasksList.valuesAfter(afterId);
+    }
 
-        List<SubTask> result = getEpic(epicId)
-                .map(epic -> epic.getSubTasksIds().stream()
-                        .map(this::getSubTask)
-                        .flatMap(Optional::stream)
-                        .toList())
-                .orElseGet(Collections::emptyList);
+    @Override
+    public Iterator<Task> prioritizedAfter(LocalDateTime startTime, int afterId) {
+        NavigableMap<StartKey, Task> tail = startTime == null ? prioritizedTasks
+                : prioritizedTasks.tailMap(new StartKey(startTime, afterId), false);
+        return Collections.unmodifiableCollection(tail.values()).iterator();
+    }
+
+    @Override
+    public List<Task> findByStatus(TaskType type, TaskStatus status) {
+        return collectByStatus(type, status, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Task> findInRange(TaskType type, LocalDateTime from, LocalDateTime to) {
+        return collectInRange(type, null, from, to, null, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Task> findByStatus(TaskType type, TaskStatus status, int afterId, int limit) {
+        return collectByStatus(type, status, afterId, limit);
+    }
 
-        return new ArrayList<>(result);
+    @Override
+    public List<Task> findInRange(TaskType type, TaskStatus status, LocalDateTime from, LocalDateTime to,
+                                  LocalDateTime afterStart, int afterId, int limit) {
+        return collectInRange(type, status, from, to, afterStart == null ? null : new StartKey(afterStart, afterId),
+                limit);
     }
 
     @Override
     public Optional<Task> getTask(int id) {
-        if (tasksList.containsKey(id)) {
-            historyManager.addToHistory(tasksList.get(id));
-        }
-        return Optional.ofNullable(tasksList.get(id));
+        return viewed(peekTask(id));
     }
 
     @Override
     public Optional<Epic> getEpic(int id) {
-        if (epicsList.containsKey(id)) {
-            historyManager.addToHistory(epicsList.get(id));
-        }
-        return Optional.ofNullable(epicsList.get(id));
+        return viewed(peekEpic(id));
     }
 
     @Override
     public Optional<SubTask> getSubTask(int id) {
-        if (subTasksList.containsKey(id)) {
-            historyManager.addToHistory(subTasksList.get(id));
-        }
+        return viewed(peekSubTask(id));
+    }
+
+    @Override
+    public Optional<Task> peekTask(int id) {
+        return Optional.ofNullable(tasksList.get(id));
+    }
+
+    @Override
+    public Optional<Epic> peekEpic(int id) {
+        return Optional.ofNullable(epicsList.get(id));
+    }
+
+    @Override
+    public Optional<SubTask> peekSubTask(int id) {
         return Optional.ofNullable(subTasksList.get(id));
     }
 
     @Override
     public void updateTask(Task task, int taskId) {
-        if (!isOverlap(task)) {
-            if (tasksList.containsKey(taskId)) {
-                task.setId(taskId);
-                Task newTask = new Task(task);
-                tasksList.put(taskId, newTask);
-                syncTasksPriority();
+        mutate(() -> {
+            if (!isOverlap(task, taskId)) {
+                if (tasksList.containsKey(taskId)) {
+                    task.setId(taskId);
+                    Task newTask = new Task(task);
+                    Task oldTask = tasksList.put(taskId, newTask);
+                    unschedule(oldTask);
+                    retired(oldTask);
+                    schedule(newTask);
+                    taskSaved(newTask);
+                }
             }
-        }
+        });
     }
 
     @Override
     public void updateEpic(Epic epic, int epicId) {
-        if (!isOverlap(epic)) {
-            if (epicsList.containsKey(epicId)) {
-                epic.setId(epicId);
-
-                Epic newEpic = new Epic(epic);
-                epicsList.put(epicId, newEpic);
-
-                setEpicParameters(epicId); // статус эпика
-                syncTasksPriority();
+        mutate(() -> {
+            if (!isOverlap(epic, epicId)) {
+                replaceEpic(epic, epicId);
             }
-        }
+        });
     }
 
     @Override
     public void updateSubTask(SubTask subTask, int subTaskId) {
-        if (!isOverlap(subTask)) {
-            if (subTasksList.containsKey(subTaskId)) {
-                int epicId = subTasksList.get(subTaskId).getEpicId();
-                subTask.setId(subTaskId);
-
-                SubTask newSubTusk = new SubTask(subTask);
-                newSubTusk.setEpicId(epicId);
-                subTasksList.put(subTaskId, newSubTusk);
-
-                setEpicParameters(epicId);
-                syncTasksPriority();
+        mutate(() -> {
+            if (!isOverlap(subTask, subTaskId)) {
+                if (subTasksList.containsKey(subTaskId)) {
+                    int epicId = subTasksList.get(subTaskId).getEpicId();
+                    subTask.setId(subTaskId);
+
+                    SubTask newSubTusk = new SubTask(subTask);
+                    newSubTusk.setEpicId(epicId);
+                    SubTask oldSubTask = subTasksList.put(subTaskId, newSubTusk);
+                    unschedule(oldSubTask);
+                    retired(oldSubTask);
+                    schedule(newSubTusk);
+
+                    Epic epic = epicsList.get(epicId);
+                    epic.replaceSubTask(oldSubTask, newSubTusk);
+                    taskSaved(newSubTusk);
+                    taskSaved(epic);
+                }
             }
-        }
+        });
     }
 
     @Override
     public void removeTask(int taskId) {
-        tasksList.remove(taskId);
-        historyManager.remove(taskId);
-        syncTasksPriority();
+        mutate(() -> deleteTask(taskId));
     }
 
     @Override
     public void removeSubTask(int subTaskId) {
-        if (subTasksList.containsKey(subTaskId)) {
-            SubTask subTask = subTasksList.get(subTaskId); // удаляемая подзадача
-            Epic epic = epicsList.get(subTask.getEpicId()); // эпик удаляемой подзадачи
-            epic.getSubTasksIds().remove((Integer) subTask.getId()); // удаление id подзадачи в эпике
-            setEpicParameters(subTask.getEpicId());
-            subTask.setEpicId(0); // обнуление поля epicId в подзадаче
-            subTasksList.remove(subTaskId);
-            historyManager.remove(subTaskId);// удаление
-            syncTasksPriority();
-        }
+        mutate(() -> deleteSubTask(subTaskId));
     }
 
     @Override
     public void removeEpic(int epicId) {
-        if (epicsList.containsKey(epicId)) {
-            ArrayList<Integer> subTasksIds = new ArrayList<>(epicsList.get(epicId).getSubTasksIds());
-            subTasksIds.forEach(this::removeSubTask);
-
-            epicsList.remove(epicId); // удаление эпика
-            historyManager.remove(epicId);
-            syncTasksPriority();
-        }
+        mutate(() -> deleteEpic(epicId));
     }
 
     @Override
     public void removeAllTasks() {
-        tasksList.clear();
-        syncTasksPriority();
+        mutate(() -> {
+            tasksList.values().forEach(task -> {
+                unschedule(task);
+                taskRemoved(task);
+            });
+            tasksList.clear();
+        });
     }
 
     @Override
     public void removeAllSubTasks() {
-        epicsList.values().forEach(epic -> epic.getSubTasksIds().clear());
-        subTasksList.clear();
-        syncTasksPriority();
+        mutate(() -> {
+            epicsList.values().forEach(epic -> {
+                epic.clearSubTasks();
+                taskSaved(epic);
+            });
+            subTasksList.values().forEach(subTask -> {
+                unschedule(subTask);
+                taskRemoved(subTask);
+            });
+            subTasksList.clear();
+        });
     }
 
     @Override
     public void removeAllEpics() {
-        epicsList.clear();
-        subTasksList.clear();
-        syncTasksPriority();
+        mutate(() -> {
+            epicsList.values().forEach(this::taskRemoved);
+            epicsList.clear();
+            subTasksList.values().forEach(subTask -> {
+                unschedule(subTask);
+                taskRemoved(subTask);
+            });
+            subTasksList.clear();
+        });
+    }
+
+    // пакетные операции: весь пакет проверяется до первого изменения, поэтому при ошибке
+    // менеджер остается в исходном состоянии
+    @Override
+    public void addTasks(List<Task> tasks) {
+        mutate(() -> {
+            List<Task> newTasks = tasks.stream().map(Task::new).toList();
+            assignIds(newTasks);
+            checkOverlaps(newTasks);
+            for (int i = 0; i < newTasks.size(); i++) {
+                Task newTask = newTasks.get(i);
+                tasks.get(i).setId(newTask.getId());
+                tasksList.put(newTask.getId(), newTask);
+                schedule(newTask);
+                taskSaved(newTask);
+            }
+        });
+    }
+
+    @Override
+    public void addEpics(List<Epic> epics) {
+        mutate(() -> {
+            List<Epic> newEpics = epics.stream().map(Epic::new).toList();
+            assignIds(newEpics);
+            for (int i = 0; i < newEpics.size(); i++) {
+                Epic newEpic = newEpics.get(i);
+                epics.get(i).setId(newEpic.getId());
+                newEpic.clearSubTasks();
+                epicsList.put(newEpic.getId(), newEpic);
+                taskSaved(newEpic);
+            }
+        });
+    }
+
+    // эпик каждой подзадачи берется из ее epicId
+    @Override
+    public void addSubTasks(List<SubTask> subTasks) {
+        mutate(() -> {
+            for (SubTask subTask : subTasks) {
+                if (!epicsList.containsKey(subTask.getEpicId())) {
+                    throw new TaskCreateException("Для добавления подзадачи нужно указать существующий EpicID");
+                }
+            }
+            List<SubTask> newSubTasks = subTasks.stream().map(SubTask::new).toList();
+            assignIds(newSubTasks);
+            checkOverlaps(newSubTasks);
+            Set<Epic> changedEpics = new LinkedHashSet<>();
+            for (int i = 0; i < newSubTasks.size(); i++) {
+                SubTask newSubTask = newSubTasks.get(i);
+                subTasks.get(i).setId(newSubTask.getId());
+                subTasksList.put(newSubTask.getId(), newSubTask);
+                schedule(newSubTask);
+                Epic epic = epicsList.get(newSubTask.getEpicId());
+                epic.addSubTask(newSubTask);
+                changedEpics.add(epic);
+                taskSaved(newSubTask);
+            }
+            changedEpics.forEach(this::taskSaved);
+        });
+    }
+
+    // задачи определяются по своим id, задачи с неизвестными id пропускаются, как и в updateTask;
+    // из нескольких версий одной задачи в пакете остается последняя, как при обновлении по одной
+    @Override
+    public void updateTasks(List<Task> tasks) {
+        mutate(() -> {
+            List<Task> newTasks = lastVersions(tasks).stream()
+                    .filter(task -> tasksList.containsKey(task.getId()))
+                    .map(Task::new)
+                    .toList();
+            List<Task> oldTasks = newTasks.stream().map(task -> tasksList.get(task.getId())).toList();
+            replaceScheduled(oldTasks, newTasks);
+            newTasks.forEach(newTask -> {
+                retired(tasksList.put(newTask.getId(), newTask));
+                taskSaved(newTask);
+            });
+        });
+    }
+
+    @Override
+    public void updateEpics(List<Epic> epics) {
+        mutate(() -> {
+            // та же проверка, что в updateEpic, но для всего пакета до первой замены
+            epics.forEach(epic -> isOverlap(epic, epic.getId()));
+            epics.forEach(epic -> replaceEpic(epic, epic.getId()));
+        });
+    }
+
+    @Override
+    public void updateSubTasks(List<SubTask> subTasks) {
+        mutate(() -> {
+            List<SubTask> newSubTasks = lastVersions(subTasks).stream()
+                    .filter(subTask -> subTasksList.containsKey(subTask.getId()))
+                    .map(SubTask::new)
+                    .toList();
+            List<SubTask> oldSubTasks = newSubTasks.stream().map(subTask -> subTasksList.get(subTask.getId())).toList();
+            replaceScheduled(oldSubTasks, newSubTasks);
+            Set<Epic> changedEpics = new LinkedHashSet<>();
+            for (int i = 0; i < newSubTasks.size(); i++) {
+                SubTask oldSubTask = oldSubTasks.get(i);
+                SubTask newSubTask = newSubTasks.get(i);
+                newSubTask.setEpicId(oldSubTask.getEpicId()); // подзадача не переходит в другой эпик
+                subTasksList.put(newSubTask.getId(), newSubTask);
+                retired(oldSubTask);
+                Epic epic = epicsList.get(oldSubTask.getEpicId());
+                epic.replaceSubTask(oldSubTask, newSubTask);
+                changedEpics.add(epic);
+                taskSaved(newSubTask);
+            }
+            changedEpics.forEach(this::taskSaved);
+        });
+    }
+
+    @Override
+    public void removeTasks(Collection<Integer> taskIds) {
+        mutate(() -> taskIds.forEach(this::deleteTask));
+    }
+
+    @Override
+    public void removeSubTasks(Collection<Integer> subTaskIds) {
+        mutate(() -> subTaskIds.forEach(this::deleteSubTask));
+    }
+
+    @Override
+    public void removeEpics(Collection<Integer> epicIds) {
+        mutate(() -> epicIds.forEach(this::deleteEpic));
     }
 
     @Override
@@ -218,81 +444,332 @@ public class InMemoryTaskManager implements TaskManager {
 
     @Override
     public List<Task> getPrioritizedTasks() {
-        return prioritizedTasks.stream().toList();
+        List<Task> snapshot = prioritizedSnapshot;
+        if (snapshot == null) {
+            snapshot = List.copyOf(prioritizedTasks.values());
+            prioritizedSnapshot = snapshot;
+        }
+        return snapshot;
+    }
+
+    // задачи расписания не пересекаются, поэтому notBefore может накрывать только ближайшая задача перед ним;
+    // дальше расписание обходится от notBefore до первого подходящего промежутка: O(log n + k),
+    // где k - число задач, стоящих вплотную друг к другу после notBefore
+    @Override
+    public LocalDateTime findFreeSlot(Duration duration, LocalDateTime notBefore) {
+        if (duration.isNegative()) {
+            throw new IllegalArgumentException("Длительность не может быть отрицательной");
+        }
+        LocalDateTime slotStart = notBefore;
+        Map.Entry<StartKey, Task> previous = prioritizedTasks.lowerEntry(new StartKey(notBefore, Integer.MIN_VALUE));
+        if (previous != null && previous.getValue().getEndTime().isAfter(slotStart)) {
+            slotStart = previous.getValue().getEndTime();
+        }
+        for (Task task : prioritizedTasks.tailMap(new StartKey(slotStart, Integer.MIN_VALUE), true).values()) {
+            if (!slotStart.plus(duration).isAfter(task.getTaskStartTime())) {
+                return slotStart;
+            }
+            if (task.getEndTime().isAfter(slotStart)) {
+                slotStart = task.getEndTime();
+            }
+        }
+        return slotStart;
     }
 
-    private void setEpicParameters(int epicId) {
-        Epic currentEpic = getEpic(epicId)
-                .orElseThrow(() -> new NoSuchElementException("Задача не найдена"));
-        List<SubTask> subTasks = new ArrayList<>();
+    // вызывается после добавления или изменения задачи любого типа, включая пересчет эпика
+    protected void onTaskSaved(Task task) {
+    }
 
-        // вычисление TaskStatus
-        List<TaskStatus> subTasksStatus = currentEpic.getSubTasksIds().stream()
-                .map(this::getSubTask)
-                .flatMap(Optional::stream)
-                .peek(subTasks::add)
-                .map(Task::getTaskStatus)
-                .toList();
+    // вызывается после удаления задачи любого типа
+    protected void onTaskRemoved(Task task) {
+    }
+
+    // Через этот метод проходит каждая изменяющая операция: после нее накопленные изменения уходят в хранилище.
+    // Наследники оборачивают его, чтобы сериализовать изменения (ConcurrentTaskManager, FileBackedTaskManager)
+    protected void mutate(Runnable operation) {
+        operation.run();
+        commitChanges();
+    }
+
+    // добавление задачи, восстановленной из файла автосохранения, без проверок и генерации id;
+    // final - вызывается из конструкторов при загрузке из хранилища
+    protected final void restoreTask(Task task) {
+        idGenerator.advanceTo(task.getId());
+        switch (task.getTaskType()) {
+            case TaskType.TASK -> tasksList.put(task.getId(), task);
+            case TaskType.EPIC -> epicsList.put(task.getId(), (Epic) task);
+            case TaskType.SUBTASK -> {
+                SubTask subTask = (SubTask) task;
+                subTasksList.put(subTask.getId(), subTask);
+                Epic epic = epicsList.get(subTask.getEpicId()); // эпики сохраняются раньше подзадач
+                if (epic != null) {
+                    epic.addSubTask(subTask);
+                }
+            }
+        }
+        if (task.getTaskType() != TaskType.EPIC) {
+            schedule(task);
+        }
+        queryIndex.update(task);
+        if (task.getTaskType() == TaskType.SUBTASK && epicsList.containsKey(((SubTask) task).getEpicId())) {
+            queryIndex.update(epicsList.get(((SubTask) task).getEpicId())); // статус эпика пересчитан
+        }
+    }
 
-        boolean statusInProgress = subTasksStatus.contains(TaskStatus.IN_PROGRESS);
-        boolean statusNew = subTasksStatus.contains(TaskStatus.NEW);
-        boolean statusDone = subTasksStatus.contains(TaskStatus.DONE);
+    // единственное место, где чтение записывается в историю
+    private <T extends Task> Optional<T> viewed(Optional<T> task) {
+        task.ifPresent(historyManager::addToHistory);
+        return task;
+    }
 
-        if (statusInProgress || statusNew && statusDone) {
-            currentEpic.setTaskStatus(TaskStatus.IN_PROGRESS);
-        } else if (statusDone && !statusNew) {
-            currentEpic.setTaskStatus(TaskStatus.DONE);
-        } else {
-            currentEpic.setTaskStatus(TaskStatus.NEW);
+    // изменения проходят через индекс запросов до уведомления наследников
+    private void taskSaved(Task task) {
+        queryIndex.update(task);
+        if (store != null) {
+            pendingChanges.add(new TaskChange.Saved(task));
         }
+        onTaskSaved(task);
+    }
 
-        if (!subTasks.isEmpty()) {
-            List<SubTask> sortedSubTasks = subTasks.stream()
-                    .sorted(Comparator.comparing(SubTask::getTaskStartTime))
-                    .toList();
+    private void taskRemoved(Task task) {
+        queryIndex.remove(task);
+        retired(task);
+        if (store != null) {
+            pendingChanges.add(new TaskChange.Removed(task.getId(), task.getTaskType()));
+        }
+        onTaskRemoved(task);
+    }
+
+    // Прежняя версия задачи может остаться у вызывающего (история, результат getTask). Ее текст возвращается
+    // в объект, пока хранилище еще хранит старую запись: иначе она читала бы текст новой версии или удаленной записи
+    private void retired(Task oldVersion) {
+        if (textCache != null) {
+            textCache.attach(oldVersion);
+        }
+    }
+
+    // конец изменяющей операции: накопленные изменения уходят в хранилище одним вызовом,
+    // после чего текст сохраненных задач можно выгрузить из памяти
+    private void commitChanges() {
+        if (store != null && !pendingChanges.isEmpty()) {
+            List<TaskChange> changes = List.copyOf(pendingChanges);
+            pendingChanges.clear();
+            store.apply(changes);
+            if (textCache != null) {
+                for (TaskChange change : changes) {
+                    switch (change) {
+                        case TaskChange.Saved saved -> textCache.detach(saved.task());
+                        case TaskChange.Removed removed -> textCache.invalidate(removed.id());
+                    }
+                }
+            }
+        }
+    }
+
+    // Вызывается из конструкторов, поэтому менеджер не передается наружу: лямбда хранилища захватывает
+    // только локальные переменные, а задачи восстанавливаются в цикле
+    private void load() {
+        List<Task> loaded = new ArrayList<>();
+        TaskTextCache cache = textCache;
+        store.load(task -> {
+            if (cache != null) {
+                task.detachText(cache);
+            }
+            loaded.add(task);
+        });
+        loaded.sort(Comparator.comparingInt(Task::getId));
+        for (TaskType type : new TaskType[]{TaskType.TASK, TaskType.EPIC, TaskType.SUBTASK}) {
+            for (Task task : loaded) {
+                if (task.getTaskType() == type) {
+                    restoreTask(task); // эпики раньше подзадач
+                }
+            }
+        }
+        idGenerator.advanceTo(store.highWaterMark());
+        leasedUpTo = idGenerator.getHighWaterMark();
+    }
+
+    // новая граница выданных блоков сохраняется до того, как id из них попадут в задачи;
+    // блокировка берется только при выдаче нового блока
+    private void idsLeased() {
+        if (idGenerator.getHighWaterMark() <= leasedUpTo) {
+            return;
+        }
+        synchronized (idGenerator) {
+            int highWaterMark = idGenerator.getHighWaterMark();
+            if (highWaterMark > leasedUpTo) {
+                if (store != null) {
+                    store.saveHighWaterMark(highWaterMark);
+                }
+                leasedUpTo = highWaterMark;
+            }
+        }
+    }
+
+    private List<Task> collectByStatus(TaskType type, TaskStatus status, int afterId, int limit) {
+        List<Task> result = new ArrayList<>();
+        queryIndex.forEachWithStatus(type, status, afterId, id -> {
+            result.add(find(type, id));
+            return result.size() < limit;
+        });
+        return result;
+    }
+
+    // фильтр по статусу проверяется на задачах из диапазона: обход пропорционален числу просмотренных задач
+    private List<Task> collectInRange(TaskType type, TaskStatus status, LocalDateTime from, LocalDateTime to,
+                                      StartKey after, int limit) {
+        List<Task> result = new ArrayList<>();
+        queryIndex.forEachStartingIn(type, from, to, after, id -> {
+            Task task = find(type, id);
+            if (status == null || task.getTaskStatus() == status) {
+                result.add(task);
+            }
+            return result.size() < limit;
+        });
+        return result;
+    }
+
+    private Task find(TaskType type, int id) {
+        return switch (type) {
+            case TASK -> tasksList.get(id);
+            case EPIC -> epicsList.get(id);
+            case SUBTASK -> subTasksList.get(id);
+        };
+    }
+
+    // удаление без виртуальных вызовов: наследники сохраняют состояние один раз на всю операцию
+    private void deleteTask(int taskId) {
+        Task task = tasksList.remove(taskId);
+        if (task != null) {
+            unschedule(task);
+            taskRemoved(task);
+        }
+        historyManager.remove(taskId);
+    }
+
+    private void deleteSubTask(int subTaskId) {
+        if (subTasksList.containsKey(subTaskId)) {
+            SubTask subTask = subTasksList.get(subTaskId); // удаляемая подзадача
+            Epic epic = epicsList.get(subTask.getEpicId()); // эпик удаляемой подзадачи
+            if (epic != null) {
+                epic.removeSubTask(subTask); // удаление подзадачи из эпика
+                taskSaved(epic);
+            }
+            unschedule(subTask);
+            subTasksList.remove(subTaskId);
+            taskRemoved(subTask); // наследники еще видят эпик удаляемой подзадачи
+            subTask.setEpicId(0); // обнуление поля epicId в подзадаче
+            historyManager.remove(subTaskId);// удаление
+        }
+    }
+
+    private void deleteEpic(int epicId) {
+        if (epicsList.containsKey(epicId)) {
+            ArrayList<Integer> subTasksIds = new ArrayList<>(epicsList.get(epicId).getSubTasksIds());
+            subTasksIds.forEach(this::deleteSubTask);
+
+            taskRemoved(epicsList.remove(epicId)); // удаление эпика
+            historyManager.remove(epicId);
+        }
+    }
 
-            LocalDateTime startTime = sortedSubTasks.getFirst().getTaskStartTime();
-            LocalDateTime endTime = sortedSubTasks.getLast().getTaskStartTime()
-                    .plus(sortedSubTasks.getLast().getTaskDuration());
+    private void replaceEpic(Epic epic, int epicId) {
+        if (epicsList.containsKey(epicId)) {
+            epic.setId(epicId);
 
-            // установка StartTime
-            currentEpic.setTaskStartTime(startTime);
+            Epic newEpic = new Epic(epic);
+            newEpic.clearSubTasks();
+            Epic oldEpic = epicsList.put(epicId, newEpic);
+
+            // подзадачи переходят в обновленный эпик вместе со статусом и временем
+            oldEpic.getSubTasksIds().forEach(id -> newEpic.addSubTask(subTasksList.get(id)));
+            retired(oldEpic);
+            taskSaved(newEpic);
+        }
+    }
+
+    // один блок id на весь пакет вместо обращения к генератору за каждым id
+    private void assignIds(List<? extends Task> batch) {
+        if (!batch.isEmpty()) {
+            IdGenerator.IdBlock ids = idGenerator.leaseBlock(batch.size());
+            idsLeased();
+            batch.forEach(task -> task.setId(ids.next()));
+        }
+    }
+
+    // без этого обе версии одной задачи снимали бы с расписания одну и ту же старую и обе попадали бы в него
+    private static <T extends Task> Collection<T> lastVersions(List<T> batch) {
+        Map<Integer, T> versions = new LinkedHashMap<>();
+        batch.forEach(task -> versions.put(task.getId(), task));
+        return versions.values();
+    }
 
-            // установка EndTime
-                currentEpic.setEndTime(endTime);
+    // замена интервалов пакета: старые версии снимаются с расписания, чтобы задачи пакета могли
+    // занимать время друг друга; при пересечении расписание возвращается в исходное состояние
+    private void replaceScheduled(List<? extends Task> oldTasks, List<? extends Task> newTasks) {
+        oldTasks.forEach(this::unschedule);
+        try {
+            checkOverlaps(newTasks);
+        } catch (OverlapException e) {
+            oldTasks.forEach(this::schedule);
+            throw e;
+        }
+        newTasks.forEach(this::schedule);
+    }
 
-            // установка Duration
-            currentEpic.setTaskDuration(Duration.between(startTime, endTime).toMinutes());
+    // пакет сортируется по времени начала, пересечения внутри пакета находятся одним проходом,
+    // пересечения с уже запланированными задачами - через индекс
+    private void checkOverlaps(List<? extends Task> batch) {
+        List<? extends Task> scheduled = batch.stream()
+                .filter(InMemoryTaskManager::isScheduled)
+                .sorted(Comparator.comparing(Task::getTaskStartTime))
+                .toList();
+        LocalDateTime maxEnd = null;
+        for (Task task : scheduled) {
+            if (maxEnd != null && task.getTaskStartTime().isBefore(maxEnd)) {
+                throw new OverlapException("Задачи пересекаются");
+            }
+            if (maxEnd == null || task.getEndTime().isAfter(maxEnd)) {
+                maxEnd = task.getEndTime();
+            }
+            isOverlap(task, 0); // старые версии обновляемых задач уже сняты с расписания
         }
     }
 
-    private void syncTasksPriority() {
-        prioritizedTasks.clear();
-        prioritizedTasks.addAll(
-                Stream.of(tasksList.values(), subTasksList.values())
-                        .flatMap(Collection::stream)
-                        .filter(task -> task.getTaskStartTime() != Task.DEFAULT_TIME)
-                        .filter(task -> task.getTaskStartTime() != null)
-                        .toList()
-        );
-    }
-
-    private boolean isOverlap(Task task) {
-        if (task.getTaskStartTime() != LocalDateTime.MIN && getPrioritizedTasks().stream()
-                    .filter(t -> !t.getTaskType().equals(TaskType.EPIC))
-                    .filter(t -> !t.equals(task))
-                    .anyMatch(t -> t.getTaskStartTime().isBefore(task.getTaskStartTime()) &&
-                            t.getEndTime().isAfter(task.getTaskStartTime()) ||
-                            (task.getTaskStartTime().isBefore(t.getEndTime())) &&
-                                    (task.getEndTime().isAfter(t.getEndTime())))) {
+    // при обновлении интервал заменяемой записи не считается пересечением: id берется у нее, а не у аргумента;
+    // при добавлении передается 0 - id аргумента мог остаться от прошлого добавления или прийти в теле запроса
+    private boolean isOverlap(Task task, int ownId) {
+        if (isScheduled(task) && scheduleIndex.intersects(task.getTaskStartTime(), task.getEndTime(), ownId)) {
             throw new OverlapException("Задачи пересекаются");
         }
         return false;
     }
 
+    // добавление уже проверенной задачи или подзадачи в расписание и индекс пересечений
+    private void schedule(Task task) {
+        if (isScheduled(task)) {
+            prioritizedTasks.put(StartKey.of(task), task);
+            scheduleIndex.add(task.getId(), task.getTaskStartTime(), task.getEndTime());
+            prioritizedSnapshot = null;
+        }
+    }
+
+    private void unschedule(Task task) {
+        if (task != null && isScheduled(task)) {
+            prioritizedTasks.remove(StartKey.of(task));
+            scheduleIndex.remove(task.getId());
+            prioritizedSnapshot = null;
+        }
+    }
+
+    static boolean isScheduled(Task task) {
+        return task.getTaskStartTime() != null && !task.getTaskStartTime().equals(Task.DEFAULT_TIME);
+    }
+
     private int createNewId() {
-        defaultId++;
-        return defaultId;
+        int id = idGenerator.nextId();
+        idsLeased();
+        return id;
     }
 }
 
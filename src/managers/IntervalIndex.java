@@ -0,0 +1,154 @@
+package managers;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Индекс интервалов [start, end) для проверки пересечений за O(log n).
+// Декартово дерево упорядочено по (start, id), каждый узел хранит максимальный конец интервала
+// в своем поддереве, поэтому поиск отбрасывает ветки, которые заведомо заканчиваются раньше запроса.
+class IntervalIndex {
+    private final IntObjectMap<Node> nodes = new IntObjectMap<>();
+    private Node root;
+
+    void add(int id, LocalDateTime start, LocalDateTime end) {
+        remove(id);
+        Node node = new Node(id, start, end);
+        nodes.put(id, node);
+        root = insert(root, node);
+    }
+
+    void remove(int id) {
+        Node node = nodes.remove(id);
+        if (node != null) {
+            root = delete(root, node);
+        }
+    }
+
+    void clear() {
+        nodes.clear();
+        root = null;
+    }
+
+    int size() {
+        return nodes.size();
+    }
+
+    // true, если [start, end) пересекается хотя бы с одним интервалом, кроме интервала excludedId
+    boolean intersects(LocalDateTime start, LocalDateTime end, int excludedId) {
+        return intersects(root, start, end, excludedId);
+    }
+
+    private boolean intersects(Node node, LocalDateTime start, LocalDateTime end, int excludedId) {
+        if (node == null || !node.maxEnd.isAfter(start)) {
+            return false;
+        }
+        if (node.id != excludedId && node.start.isBefore(end) && node.end.isAfter(start)) {
+            return true;
+        }
+        if (intersects(node.left, start, end, excludedId)) {
+            return true;
+        }
+        // все интервалы правого поддерева начинаются не раньше node.start
+        return node.start.isBefore(end) && intersects(node.right, start, end, excludedId);
+    }
+
+    private Node insert(Node node, Node newNode) {
+        if (node == null) {
+            return newNode;
+        }
+        if (newNode.priority > node.priority) {
+            Node[] parts = split(node, newNode);
+            newNode.left = parts[0];
+            newNode.right = parts[1];
+            return update(newNode);
+        }
+        if (compare(newNode, node) < 0) {
+            node.left = insert(node.left, newNode);
+        } else {
+            node.right = insert(node.right, newNode);
+        }
+        return update(node);
+    }
+
+    private Node delete(Node node, Node target) {
+        if (node == null) {
+            return null;
+        }
+        if (node == target) {
+            return merge(node.left, node.right);
+        }
+        if (compare(target, node) < 0) {
+            node.left = delete(node.left, target);
+        } else {
+            node.right = delete(node.right, target);
+        }
+        return update(node);
+    }
+
+    // делит дерево на узлы меньше key и узлы не меньше key
+    private Node[] split(Node node, Node key) {
+        if (node == null) {
+            return new Node[]{null, null};
+        }
+        if (compare(node, key) < 0) {
+            Node[] parts = split(node.right, key);
+            node.right = parts[0];
+            return new Node[]{update(node), parts[1]};
+        } else {
+            Node[] parts = split(node.left, key);
+            node.left = parts[1];
+            return new Node[]{parts[0], update(node)};
+        }
+    }
+
+    private Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            return update(left);
+        } else {
+            right.left = merge(left, right.left);
+            return update(right);
+        }
+    }
+
+    private Node update(Node node) {
+        LocalDateTime maxEnd = node.end;
+        if (node.left != null && node.left.maxEnd.isAfter(maxEnd)) {
+            maxEnd = node.left.maxEnd;
+        }
+        if (node.right != null && node.right.maxEnd.isAfter(maxEnd)) {
+            maxEnd = node.right.maxEnd;
+        }
+        node.maxEnd = maxEnd;
+        return node;
+    }
+
+    private static int compare(Node a, Node b) {
+        int byStart = a.start.compareTo(b.start);
+        return byStart != 0 ? byStart : Integer.compare(a.id, b.id);
+    }
+
+    private static class Node {
+        final int id;
+        final LocalDateTime start;
+        final LocalDateTime end;
+        final int priority;
+        LocalDateTime maxEnd;
+        Node left;
+        Node right;
+
+        Node(int id, LocalDateTime start, LocalDateTime end) {
+            this.id = id;
+            this.start = start;
+            this.end = end;
+            this.maxEnd = end;
+            this.priority = ThreadLocalRandom.current().nextInt();
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package managers;
+
+import enums.SyncMode;
+import exceptions.ManagerSaveException;
+import tasks.Task;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+// Хранилище-журнал: изменения операции дописываются в конец файла строками журнала FileTaskStore
+// (задача в формате CSV или -id для удаления) через GroupCommitLog, поэтому запись стоит пропорционально
+// изменениям. Когда записей в файле становится вдвое больше, чем живых задач (и не меньше порога),
+// журнал переписывается только живыми задачами - перезапись окупается накопленными изменениями.
+// Для find хранится смещение последней строки каждой живой задачи, поэтому задача читается одной строкой файла
+public class LogTaskStore implements TaskStore {
+    public static final String LOG_EXTENSION = ".log";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int READ_SIZE = 512; // начальный буфер чтения строки задачи
+
+    private final File file;
+    private final SyncMode syncMode;
+    private final StringBuilder operationRecords = new StringBuilder();
+    private final BitSet liveIds = new BitSet();
+    private long[] offsets = new long[0]; // смещение последней записи задачи в файле по id
+    private GroupCommitLog log;
+    private FileChannel reader; // чтение отдельных задач для find
+    private long logSize; // длина файла с учетом записей, отданных в log
+    private int logRecords; // записей в файле вместе с устаревшими
+    private int compactionThreshold = FileBackedTaskManager.DEFAULT_COMPACTION_THRESHOLD;
+    private int savedHighWaterMark;
+
+    public LogTaskStore(Path path) {
+        this(path, SyncMode.OS_BUFFERED);
+    }
+
+    public LogTaskStore(Path path, SyncMode syncMode) {
+        if (!path.getFileName().toString().endsWith(LOG_EXTENSION)) {
+            throw new ManagerSaveException("Файл хранилища должен быть в формате .log");
+        }
+        this.file = path.toFile();
+        this.syncMode = syncMode;
+    }
+
+    public void setCompactionThreshold(int compactionThreshold) {
+        if (compactionThreshold < 1) {
+            throw new IllegalArgumentException("Порог сжатия журнала должен быть положительным");
+        }
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    @Override
+    public void load(Consumer<Task> action) {
+        try {
+            SortedIntObjectMap<Task> tasks = new SortedIntObjectMap<>();
+            if (file.exists()) {
+                logRecords = FileTaskStore.replayJournal(file, tasks,
+                        (task, offset) -> setOffset(task.getId(), offset));
+            }
+            tasks.valuesAfter(0).forEachRemaining(task -> {
+                liveIds.set(task.getId());
+                action.accept(task);
+            });
+            savedHighWaterMark = FileTaskStore.readHighWaterMark(file);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка загрузки из файла автосохранения: " + e.getMessage());
+        }
+        openLog();
+    }
+
+    @Override
+    public int highWaterMark() {
+        return savedHighWaterMark;
+    }
+
+    @Override
+    public void saveHighWaterMark(int highWaterMark) {
+        if (highWaterMark > savedHighWaterMark) {
+            FileTaskStore.writeHighWaterMark(file, highWaterMark);
+            savedHighWaterMark = highWaterMark;
+        }
+    }
+
+    // Смещения новых записей становятся видны find только после записи в файл: кодирование задачи
+    // может само читать текст задачи этой же операции через find по прежнему смещению
+    @Override
+    public synchronized void apply(List<TaskChange> changes) {
+        int[] savedIds = new int[changes.size()];
+        long[] savedOffsets = new long[changes.size()];
+        int savedCount = 0;
+        long offset = logSize;
+        for (TaskChange change : changes) {
+            int recordStart = operationRecords.length();
+            FileTaskStore.writeJournalRecord(change, operationRecords);
+            if (change instanceof TaskChange.Saved) {
+                savedIds[savedCount] = change.id();
+                savedOffsets[savedCount++] = offset;
+            }
+            offset += utf8Length(operationRecords, recordStart, operationRecords.length());
+        }
+        long ticket = log.commit(operationRecords);
+        operationRecords.setLength(0);
+        log.awaitDurable(ticket);
+        logSize = offset;
+        for (int i = 0; i < savedCount; i++) {
+            setOffset(savedIds[i], savedOffsets[i]);
+        }
+        for (TaskChange change : changes) {
+            if (change instanceof TaskChange.Removed) {
+                liveIds.clear(change.id());
+            } else {
+                liveIds.set(change.id());
+            }
+        }
+        logRecords += changes.size();
+        if (logRecords >= compactionThreshold && logRecords > 2 * liveIds.cardinality()) {
+            compact();
+        }
+    }
+
+    @Override
+    public synchronized Optional<Task> find(int id) {
+        if (!liveIds.get(id)) {
+            return Optional.empty();
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(READ_SIZE);
+            long position = offsets[id];
+            int newline = -1;
+            while (newline < 0) {
+                if (!buffer.hasRemaining()) {
+                    buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+                }
+                int from = buffer.position();
+                if (reader.read(buffer, position + from) < 0) {
+                    throw new ManagerSaveException("Запись задачи " + id + " не найдена в журнале");
+                }
+                for (int i = from; i < buffer.position() && newline < 0; i++) {
+                    if (buffer.get(i) == '\n') {
+                        newline = i;
+                    }
+                }
+            }
+            return Optional.of(CsvTaskCodec.read(buffer.array(), 0, newline));
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка чтения из журнала: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void flush() {
+        log.sync();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (log != null) {
+            log.close();
+            closeReader();
+        }
+    }
+
+    // журнал перечитывается и переписывается живыми задачами во временный файл, который подменяет прежний
+    private void compact() {
+        log.close();
+        closeReader();
+        try {
+            SortedIntObjectMap<Task> tasks = new SortedIntObjectMap<>();
+            FileTaskStore.replayJournal(file, tasks);
+            Path temp = Path.of(file.getPath() + TEMP_SUFFIX);
+            StringBuilder line = new StringBuilder();
+            long[] compactedOffsets = new long[offsets.length];
+            long offset = 0;
+            try (FileOutputStream out = new FileOutputStream(temp.toFile());
+                 BufferedOutputStream bos = new BufferedOutputStream(out)) {
+                for (Iterator<Task> it = tasks.valuesAfter(0); it.hasNext(); ) {
+                    Task task = it.next();
+                    line.setLength(0);
+                    FileTaskStore.writeJournalRecord(new TaskChange.Saved(task), line);
+                    byte[] record = line.toString().getBytes(StandardCharsets.UTF_8);
+                    bos.write(record);
+                    compactedOffsets[task.getId()] = offset;
+                    offset += record.length;
+                }
+                bos.flush();
+                out.getFD().sync();
+            }
+            Files.move(temp, file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            offsets = compactedOffsets;
+            logRecords = tasks.size();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка сжатия журнала: " + e.getMessage());
+        } finally {
+            openLog();
+        }
+    }
+
+    private void openLog() {
+        log = new GroupCommitLog(file.toPath(), syncMode, GroupCommitLog.DEFAULT_GROUP_COMMIT_MILLIS, true);
+        try {
+            reader = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            logSize = reader.size();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка открытия журнала: " + e.getMessage());
+        }
+    }
+
+    private void closeReader() {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка закрытия журнала: " + e.getMessage());
+        }
+    }
+
+    private void setOffset(int id, long offset) {
+        if (id >= offsets.length) {
+            offsets = Arrays.copyOf(offsets, Math.max(id + 1, offsets.length * 2));
+        }
+        offsets[id] = offset;
+    }
+
+    // длина строки в UTF-8 без кодирования, как ее пишет GroupCommitLog: одиночный суррогат заменяется на '?'
+    private static long utf8Length(CharSequence text, int from, int to) {
+        long length = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
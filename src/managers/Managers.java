@@ -6,6 +6,10 @@ public class Managers {
         return new InMemoryTaskManager();
     }
 
+    public static TaskManager getDefaultConcurrent() {
+        return new ConcurrentTaskManager();
+    }
+
     public static HistoryManager getDefaultHistory() {
         return new InMemoryHistoryManager();
     }
@@ -13,4 +17,12 @@ public class Managers {
     public static FileBackedTaskManager getDefaultBacked(String path) {
         return new FileBackedTaskManager(path);
     }
+
+    public static TaskManager getStoreBacked(TaskStore store) {
+        return new InMemoryTaskManager(store);
+    }
+
+    public static TaskManager getStoreBacked(TaskStore store, int textCacheSize) {
+        return new InMemoryTaskManager(store, textCacheSize);
+    }
 }
@@ -0,0 +1,224 @@
+package managers;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+// Неизменяемое отображение int -> V со структурным разделением: put и remove копируют только путь
+// от корня до изменяемого узла (O(log n)), а прежняя версия остается доступной без изменений.
+// Декартово дерево с приоритетом от хеша ключа, поэтому форма дерева не зависит от порядка вставки.
+final class PersistentIntMap<V> {
+    private static final PersistentIntMap<?> EMPTY = new PersistentIntMap<>(null);
+
+    private final Node<V> root;
+    private final List<V> values;
+
+    private PersistentIntMap(Node<V> root) {
+        this.root = root;
+        this.values = new Values();
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> PersistentIntMap<V> empty() {
+        return (PersistentIntMap<V>) EMPTY;
+    }
+
+    V get(int key) {
+        Node<V> node = root;
+        while (node != null) {
+            if (key == node.key) {
+                return node.value;
+            }
+            node = key < node.key ? node.left : node.right;
+        }
+        return null;
+    }
+
+    int size() {
+        return size(root);
+    }
+
+    PersistentIntMap<V> put(int key, V value) {
+        return new PersistentIntMap<>(insert(root, key, value, priority(key)));
+    }
+
+    PersistentIntMap<V> remove(int key) {
+        Node<V> newRoot = delete(root, key);
+        return newRoot == root ? this : new PersistentIntMap<>(newRoot);
+    }
+
+    // неизменяемое представление значений в порядке возрастания ключей, без копирования
+    List<V> values() {
+        return values;
+    }
+
+    // значения с ключами больше afterKey в порядке возрастания ключей; спуск к первому из них - O(log n)
+    Iterator<V> valuesAfter(int afterKey) {
+        ValueIterator iterator = new ValueIterator();
+        Node<V> node = root;
+        while (node != null) {
+            if (node.key > afterKey) {
+                iterator.path.push(node);
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return iterator;
+    }
+
+    private static <V> Node<V> insert(Node<V> node, int key, V value, int priority) {
+        if (node == null) {
+            return new Node<>(key, value, priority, null, null);
+        }
+        if (key == node.key) {
+            return new Node<>(key, value, priority, node.left, node.right);
+        }
+        if (isHigher(priority, key, node)) { // ключа нет в поддереве node, он становится его корнем
+            return new Node<>(key, value, priority, split(node, key, true), split(node, key, false));
+        }
+        if (key < node.key) {
+            return node.withChildren(insert(node.left, key, value, priority), node.right);
+        }
+        return node.withChildren(node.left, insert(node.right, key, value, priority));
+    }
+
+    private static <V> Node<V> delete(Node<V> node, int key) {
+        if (node == null) {
+            return null;
+        }
+        if (key == node.key) {
+            return merge(node.left, node.right);
+        }
+        if (key < node.key) {
+            Node<V> left = delete(node.left, key);
+            return left == node.left ? node : node.withChildren(left, node.right);
+        }
+        Node<V> right = delete(node.right, key);
+        return right == node.right ? node : node.withChildren(node.left, right);
+    }
+
+    // часть дерева с ключами меньше key (lower) или больше key
+    private static <V> Node<V> split(Node<V> node, int key, boolean lower) {
+        if (node == null) {
+            return null;
+        }
+        if (node.key < key) {
+            return lower ? node.withChildren(node.left, split(node.right, key, true)) : split(node.right, key, false);
+        }
+        return lower ? split(node.left, key, true) : node.withChildren(split(node.left, key, false), node.right);
+    }
+
+    private static <V> Node<V> merge(Node<V> left, Node<V> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (isHigher(left.priority, left.key, right)) {
+            return left.withChildren(left.left, merge(left.right, right));
+        }
+        return right.withChildren(merge(left, right.left), right.right);
+    }
+
+    private static boolean isHigher(int priority, int key, Node<?> node) {
+        return priority != node.priority ? priority > node.priority : key > node.key;
+    }
+
+    private static int priority(int key) {
+        int hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static final class Node<V> {
+        final int key;
+        final V value;
+        final int priority;
+        final int size;
+        final Node<V> left;
+        final Node<V> right;
+
+        Node(int key, V value, int priority, Node<V> left, Node<V> right) {
+            this.key = key;
+            this.value = value;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = 1 + size(left) + size(right);
+        }
+
+        Node<V> withChildren(Node<V> left, Node<V> right) {
+            return new Node<>(key, value, priority, left, right);
+        }
+    }
+
+    private final class Values extends AbstractList<V> {
+
+        @Override
+        public V get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            Node<V> node = root;
+            while (true) {
+                int leftSize = PersistentIntMap.size(node.left);
+                if (index == leftSize) {
+                    return node.value;
+                }
+                if (index < leftSize) {
+                    node = node.left;
+                } else {
+                    index -= leftSize + 1;
+                    node = node.right;
+                }
+            }
+        }
+
+        @Override
+        public int size() {
+            return PersistentIntMap.this.size();
+        }
+
+        @Override
+        public Iterator<V> iterator() {
+            ValueIterator iterator = new ValueIterator();
+            iterator.pushLeft(root);
+            return iterator;
+        }
+    }
+
+    // обход по возрастанию ключей: в стеке лежат узлы, левые поддеревья которых уже пройдены
+    private final class ValueIterator implements Iterator<V> {
+        private final Deque<Node<V>> path = new ArrayDeque<>();
+
+        @Override
+        public boolean hasNext() {
+            return !path.isEmpty();
+        }
+
+        @Override
+        public V next() {
+            if (path.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Node<V> node = path.pop();
+            pushLeft(node.right);
+            return node.value;
+        }
+
+        private void pushLeft(Node<V> node) {
+            while (node != null) {
+                path.push(node);
+                node = node.left;
+            }
+        }
+    }
+}
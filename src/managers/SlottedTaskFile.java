@@ -0,0 +1,228 @@
+package managers;
+
+import exceptions.ManagerSaveException;
+import tasks.Task;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+// Файл задач из слотов фиксированного размера для сохранения только изменившихся записей.
+// Слот 0 - заголовок файла. Запись задачи (BinaryTaskCodec) занимает несколько подряд идущих слотов:
+// в начале первого - заголовок записи (метка, число слотов, id, номер версии, длина, CRC32C), дальше данные.
+// Измененная задача пишется в свободные слоты (первый подходящий промежуток или конец файла), и только после
+// этого старая запись помечается свободной обнулением метки, поэтому при сбое между шагами на диске остаются
+// обе версии и загрузка выбирает запись с большим номером версии. Удаление - обнуление метки.
+// Занятые слоты отмечены в BitSet, положение записи по id - в IntObjectMap, оба строятся при открытии файла
+class SlottedTaskFile implements AutoCloseable {
+    static final byte[] MAGIC = {'T', 'S', 'K', 'S'};
+    static final int VERSION = 1;
+    static final int SLOT_SIZE = 128;
+
+    private static final short RECORD_MARK = 0x7E57;
+    private static final int RECORD_HEADER_SIZE = 24; // метка 2, слотов 2, id 4, версия 8, длина 4, CRC 4
+
+    private final FileChannel channel;
+    private final IntObjectMap<int[]> extents = new IntObjectMap<>(); // id -> {первый слот, число слотов}
+    private final BitSet usedSlots = new BitSet();
+    private int slotCount = 1; // слотов в файле вместе с заголовком
+    private long nextVersion = 1;
+
+    private SlottedTaskFile(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    // открытие с разбором всех записей; задачи передаются в action без определенного порядка
+    static SlottedTaskFile open(Path path, Consumer<Task> action) {
+        try {
+            SlottedTaskFile file = new SlottedTaskFile(FileChannel.open(path, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.CREATE));
+            try {
+                if (file.channel.size() == 0) {
+                    file.writeFileHeader();
+                } else {
+                    file.scan(action);
+                }
+            } catch (IOException | RuntimeException e) {
+                file.channel.close();
+                throw e;
+            }
+            return file;
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка открытия файла задач: " + e.getMessage());
+        }
+    }
+
+    // record - запись BinaryTaskCodec
+    synchronized void write(int id, byte[] record) throws IOException {
+        int slots = (RECORD_HEADER_SIZE + record.length + SLOT_SIZE - 1) / SLOT_SIZE;
+        if (slots > Short.MAX_VALUE) {
+            throw new ManagerSaveException("Запись задачи " + id + " слишком велика");
+        }
+        long version = nextVersion++;
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + record.length);
+        buffer.putShort(RECORD_MARK).putShort((short) slots).putInt(id).putLong(version).putInt(record.length);
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), 4, RECORD_HEADER_SIZE - 8);
+        crc.update(record);
+        buffer.putInt((int) crc.getValue()).put(record).flip();
+        int first = allocate(slots);
+        writeFully(buffer, (long) first * SLOT_SIZE);
+        int[] previous = extents.put(id, new int[]{first, slots});
+        if (previous != null) {
+            release(previous);
+        }
+    }
+
+    synchronized void remove(int id) throws IOException {
+        int[] extent = extents.remove(id);
+        if (extent != null) {
+            release(extent);
+        }
+    }
+
+    // запись BinaryTaskCodec задачи id или null, если задачи в файле нет; читается параллельно с записью
+    // изменений, поэтому методы, меняющие положение записей, синхронизированы
+    synchronized byte[] read(int id) throws IOException {
+        int[] extent = extents.get(id);
+        if (extent == null) {
+            return null;
+        }
+        long position = (long) extent[0] * SLOT_SIZE;
+        ByteBuffer length = ByteBuffer.allocate(4);
+        readFully(length, position + 16);
+        ByteBuffer record = ByteBuffer.allocate(length.getInt(0));
+        readFully(record, position + RECORD_HEADER_SIZE);
+        return record.array();
+    }
+
+    int size() {
+        return extents.size();
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка закрытия файла задач: " + e.getMessage());
+        }
+    }
+
+    // первый промежуток из slots свободных слотов или конец файла
+    private int allocate(int slots) {
+        int start = usedSlots.nextClearBit(1);
+        while (start < slotCount) {
+            int end = usedSlots.nextSetBit(start);
+            if (end < 0 || end >= slotCount) {
+                break; // свободный хвост продолжается концом файла
+            }
+            if (end - start >= slots) {
+                break;
+            }
+            start = usedSlots.nextClearBit(end);
+        }
+        usedSlots.set(start, start + slots);
+        slotCount = Math.max(slotCount, start + slots);
+        return start;
+    }
+
+    private void release(int[] extent) throws IOException {
+        writeFully(ByteBuffer.allocate(2), (long) extent[0] * SLOT_SIZE); // метка записи обнуляется
+        usedSlots.clear(extent[0], extent[0] + extent[1]);
+    }
+
+    private void writeFileHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(SLOT_SIZE);
+        header.put(MAGIC).put((byte) VERSION).putInt(SLOT_SIZE).position(0);
+        writeFully(header, 0);
+    }
+
+    // Записи с неверной CRC (оборванные при сбое) пропускаются. Из двух версий одной задачи остается
+    // более новая, а старая освобождается на диске, чтобы не вернуться после удаления новой
+    private void scan(Consumer<Task> action) throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new ManagerSaveException("Файл задач больше 2 ГБ");
+        }
+        MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        byte[] magic = new byte[MAGIC.length];
+        data.get(0, magic);
+        if (!Arrays.equals(magic, MAGIC) || data.get(MAGIC.length) != VERSION
+                || data.getInt(MAGIC.length + 1) != SLOT_SIZE) {
+            throw new ManagerSaveException("Файл не является файлом задач со слотами версии " + VERSION);
+        }
+        slotCount = (int) ((size + SLOT_SIZE - 1) / SLOT_SIZE);
+        IntObjectMap<long[]> versions = new IntObjectMap<>(); // id -> {номер версии}
+        IntObjectMap<Task> tasks = new IntObjectMap<>();
+        byte[] header = new byte[RECORD_HEADER_SIZE - 8]; // id, версия и длина - под CRC вместе с данными
+        byte[] record = new byte[SLOT_SIZE];
+        CRC32C crc = new CRC32C();
+        int slot = 1;
+        while (slot < slotCount) {
+            int offset = slot * SLOT_SIZE;
+            if (size - offset < RECORD_HEADER_SIZE || data.getShort(offset) != RECORD_MARK) {
+                slot++;
+                continue;
+            }
+            int slots = data.getShort(offset + 2);
+            int id = data.getInt(offset + 4);
+            long version = data.getLong(offset + 8);
+            int length = data.getInt(offset + 16);
+            if (slots < 1 || length < 0 || RECORD_HEADER_SIZE + length > slots * SLOT_SIZE
+                    || offset + RECORD_HEADER_SIZE + (long) length > size) {
+                slot++;
+                continue;
+            }
+            if (record.length < length) {
+                record = new byte[Math.max(length, record.length * 2)];
+            }
+            data.get(offset + 4, header);
+            data.get(offset + RECORD_HEADER_SIZE, record, 0, length);
+            crc.reset();
+            crc.update(header);
+            crc.update(record, 0, length);
+            if ((int) crc.getValue() != data.getInt(offset + 20)) {
+                slot++;
+                continue;
+            }
+            nextVersion = Math.max(nextVersion, version + 1);
+            long[] known = versions.get(id);
+            if (known != null && known[0] > version) {
+                release(new int[]{slot, slots});
+            } else {
+                int[] previous = extents.put(id, new int[]{slot, slots});
+                if (previous != null) {
+                    release(previous);
+                }
+                versions.put(id, new long[]{version});
+                usedSlots.set(slot, slot + slots);
+                tasks.put(id, BinaryTaskCodec.decodeRecord(record, 0));
+            }
+            slot += slots;
+        }
+        tasks.values().forEach(action);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new ManagerSaveException("Файл задач оборван");
+            }
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package managers;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// IntObjectMap, дополнительно хранящий ключи в int[] для обхода по возрастанию id - без узла на запись.
+// Поиск по id остается O(1) в хеш-таблице. Новые ключи дописываются в конец массива, в том числе id не по порядку
+// (блоки разных потоков), а удаленные остаются в нем до перестройки: массив сортируется и очищается при обходе
+// или при заполнении, поэтому изменение стоит O(1), а не сдвиг хвоста.
+// Страница после курсора находится бинарным поиском: O(log n + размер страницы) без копирования таблицы.
+// Перестройка создает новый массив, поэтому итератор обходит ключи на момент своего создания
+// и пропускает удаленные после него; массив меняется только под монитором карты
+public class SortedIntObjectMap<V> extends IntObjectMap<V> {
+    private static final int DEFAULT_KEYS_CAPACITY = 16;
+
+    private int[] sortedKeys = new int[DEFAULT_KEYS_CAPACITY];
+    private int count; // занятая часть sortedKeys, вместе с удаленными ключами
+    private int removed; // удаленных ключей в sortedKeys (оценка сверху)
+    private boolean sorted = true; // sortedKeys строго возрастает
+
+    @Override
+    public synchronized V put(int key, V value) {
+        V previous = super.put(key, value);
+        if (previous == null) {
+            if (count == sortedKeys.length) {
+                rebuild();
+                if (count > sortedKeys.length / 2) {
+                    sortedKeys = Arrays.copyOf(sortedKeys, sortedKeys.length * 2);
+                }
+            }
+            if (count > 0 && key <= sortedKeys[count - 1]) {
+                sorted = false;
+            }
+            sortedKeys[count++] = key;
+        }
+        return previous;
+    }
+
+    @Override
+    public synchronized V remove(int key) {
+        V previous = super.remove(key);
+        if (previous != null) {
+            removed++;
+        }
+        return previous;
+    }
+
+    @Override
+    public synchronized void clear() {
+        super.clear();
+        sortedKeys = new int[DEFAULT_KEYS_CAPACITY];
+        count = 0;
+        removed = 0;
+        sorted = true;
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<V> iterator() {
+                return valuesAfter(Integer.MIN_VALUE);
+            }
+
+            @Override
+            public int size() {
+                return SortedIntObjectMap.this.size();
+            }
+        };
+    }
+
+    // значения с ключами больше afterKey в порядке возрастания ключей
+    public synchronized Iterator<V> valuesAfter(int afterKey) {
+        if (!sorted || removed > size()) {
+            rebuild();
+        }
+        int index = Arrays.binarySearch(sortedKeys, 0, count, afterKey);
+        return new SortedValueIterator(sortedKeys, index >= 0 ? index + 1 : -index - 1, count);
+    }
+
+    // новый массив из оставшихся ключей по возрастанию: повторы (ключ удален и добавлен снова) схлопываются
+    private void rebuild() {
+        int[] keys = Arrays.copyOf(sortedKeys, sortedKeys.length);
+        if (!sorted) {
+            Arrays.sort(keys, 0, count);
+        }
+        int live = 0;
+        for (int i = 0; i < count; i++) {
+            int key = keys[i];
+            if ((live == 0 || keys[live - 1] != key) && containsKey(key)) {
+                keys[live++] = key;
+            }
+        }
+        sortedKeys = keys;
+        count = live;
+        removed = 0;
+        sorted = true;
+    }
+
+    // следующее значение ищется только в hasNext, поэтому изменение между вызовами next уже видно
+    private class SortedValueIterator implements Iterator<V> {
+        private final int[] keys;
+        private final int end;
+        private int index;
+        private V next;
+
+        SortedValueIterator(int[] keys, int index, int end) {
+            this.keys = keys;
+            this.index = index;
+            this.end = end;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && index < end) {
+                next = get(keys[index++]);
+            }
+            return next != null;
+        }
+
+        @Override
+        public V next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            V value = next;
+            next = null;
+            return value;
+        }
+    }
+}
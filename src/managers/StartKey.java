@@ -0,0 +1,20 @@
+package managers;
+
+import tasks.Task;
+
+import java.time.LocalDateTime;
+
+// Место задачи в расписании: время начала, при равном времени - id.
+// Границы поиска по расписанию и индексам строятся из двух полей, без временной задачи
+record StartKey(LocalDateTime start, int id) implements Comparable<StartKey> {
+
+    static StartKey of(Task task) {
+        return new StartKey(task.getTaskStartTime(), task.getId());
+    }
+
+    @Override
+    public int compareTo(StartKey other) {
+        int byStart = start.compareTo(other.start);
+        return byStart != 0 ? byStart : Integer.compare(id, other.id);
+    }
+}
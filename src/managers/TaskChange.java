@@ -0,0 +1,23 @@
+package managers;
+
+import enums.TaskType;
+import tasks.Task;
+
+// Изменение одной задачи, которое менеджер передает хранилищу в конце операции.
+// Задачи изменяемы (эпик пересчитывается при изменении подзадач), поэтому хранилище должно
+// закодировать задачу внутри TaskStore.apply, а не хранить ссылку на нее
+public sealed interface TaskChange {
+
+    int id();
+
+    // задача, эпик или подзадача добавлены или изменены
+    record Saved(Task task) implements TaskChange {
+        @Override
+        public int id() {
+            return task.getId();
+        }
+    }
+
+    record Removed(int id, TaskType type) implements TaskChange {
+    }
+}
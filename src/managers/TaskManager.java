@@ -1,8 +1,13 @@
 package managers;
 
+import enums.TaskStatus;
+import enums.TaskType;
 import tasks.*;
 
-import java.util.ArrayList;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,20 +19,53 @@ public interface TaskManager {
 
     void addSubTask(SubTask subTask, int epicId);
 
-    ArrayList<Task> getTasksList();
+    List<Task> getTasksList();
 
-    ArrayList<Epic> getEpicsList();
+    List<Epic> getEpicsList();
 
-    ArrayList<SubTask> getSubTasksList();
+    List<SubTask> getSubTasksList();
 
-    ArrayList<SubTask> getSubTasksListByEpic(int epicId);
+    List<SubTask> getSubTasksListByEpic(int epicId);
 
+    // постраничный обход без копирования коллекции: элементы с id больше afterId по возрастанию id
+    Iterator<Task> tasksAfter(int afterId);
+
+    Iterator<Epic> epicsAfter(int afterId);
+
+    Iterator<SubTask> subTasksAfter(int afterId);
+
+    // задачи и подзадачи расписания, идущие после задачи с временем начала startTime и id afterId;
+    // при startTime == null - с начала расписания
+    Iterator<Task> prioritizedAfter(LocalDateTime startTime, int afterId);
+
+    // запросы по вторичным индексам, время ответа пропорционально размеру результата
+    List<Task> findByStatus(TaskType type, TaskStatus status);
+
+    // задачи типа type, начинающиеся в [from, to); незапланированные задачи не попадают
+    List<Task> findInRange(TaskType type, LocalDateTime from, LocalDateTime to);
+
+    // страницы тех же запросов, не больше limit задач после курсора: по статусу - с id больше afterId
+    // по возрастанию id, по времени - после задачи (afterStart, afterId) по расписанию,
+    // при afterStart == null - с from; status == null - задачи с любым статусом
+    List<Task> findByStatus(TaskType type, TaskStatus status, int afterId, int limit);
+
+    List<Task> findInRange(TaskType type, TaskStatus status, LocalDateTime from, LocalDateTime to,
+                           LocalDateTime afterStart, int afterId, int limit);
+
+    // просмотр задачи пользователем: найденная задача записывается в историю
     Optional<Task> getTask(int id);
 
     Optional<Epic> getEpic(int id);
 
     Optional<SubTask> getSubTask(int id);
 
+    // чтение без побочных эффектов для проверок и внутренних вызовов, история не меняется
+    Optional<Task> peekTask(int id);
+
+    Optional<Epic> peekEpic(int id);
+
+    Optional<SubTask> peekSubTask(int id);
+
     void updateTask(Task task, int taskId);
 
     void updateEpic(Epic epic, int epicId);
@@ -46,8 +84,29 @@ public interface TaskManager {
 
     void removeAllEpics();
 
+    void addTasks(List<Task> tasks);
+
+    void addEpics(List<Epic> epics);
+
+    void addSubTasks(List<SubTask> subTasks);
+
+    void updateTasks(List<Task> tasks);
+
+    void updateEpics(List<Epic> epics);
+
+    void updateSubTasks(List<SubTask> subTasks);
+
+    void removeTasks(Collection<Integer> taskIds);
+
+    void removeSubTasks(Collection<Integer> subTaskIds);
+
+    void removeEpics(Collection<Integer> epicIds);
+
     List<Task> getHistory();
 
     List<Task> getPrioritizedTasks();
+
+    // начало самого раннего промежутка расписания не раньше notBefore, в который помещается duration
+    LocalDateTime findFreeSlot(Duration duration, LocalDateTime notBefore);
 }
 
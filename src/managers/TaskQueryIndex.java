@@ -0,0 +1,86 @@
+package managers;
+
+import enums.TaskStatus;
+import enums.TaskType;
+import tasks.Task;
+
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.function.IntPredicate;
+
+// Вторичные индексы для запросов по статусу и по времени начала, отдельно для каждого типа задач.
+// Статус - упорядоченное по id дерево задач на пару (тип, статус): выборка обходит только задачи
+// с этим статусом, поэтому ее стоимость пропорциональна размеру результата, а не наибольшему id.
+// Время начала - TreeSet ключей (время, id); ключ хранится отдельно от задачи, потому что эпик
+// пересчитывается на месте и к моменту обновления индекса его время уже изменено.
+class TaskQueryIndex {
+    private final Map<TaskType, Map<TaskStatus, PersistentIntMap<Task>>> byStatus = new EnumMap<>(TaskType.class);
+    private final Map<TaskType, NavigableSet<StartKey>> byStart = new EnumMap<>(TaskType.class);
+    private final IntObjectMap<StartKey> startKeys = new IntObjectMap<>(); // проиндексированный ключ по id
+
+    TaskQueryIndex() {
+        for (TaskType type : TaskType.values()) {
+            byStart.put(type, new TreeSet<>());
+            Map<TaskStatus, PersistentIntMap<Task>> statuses = new EnumMap<>(TaskStatus.class);
+            for (TaskStatus status : TaskStatus.values()) {
+                statuses.put(status, PersistentIntMap.empty());
+            }
+            byStatus.put(type, statuses);
+        }
+    }
+
+    // добавление или переиндексация задачи после изменения
+    void update(Task task) {
+        remove(task);
+        Map<TaskStatus, PersistentIntMap<Task>> statuses = byStatus.get(task.getTaskType());
+        statuses.put(task.getTaskStatus(), statuses.get(task.getTaskStatus()).put(task.getId(), task));
+        if (InMemoryTaskManager.isScheduled(task)) {
+            StartKey key = StartKey.of(task);
+            startKeys.put(task.getId(), key);
+            byStart.get(task.getTaskType()).add(key);
+        }
+    }
+
+    // remove в дереве без этого id возвращает то же дерево без выделения памяти
+    void remove(Task task) {
+        Map<TaskStatus, PersistentIntMap<Task>> statuses = byStatus.get(task.getTaskType());
+        statuses.replaceAll((status, ids) -> ids.remove(task.getId()));
+        StartKey key = startKeys.remove(task.getId());
+        if (key != null) {
+            byStart.get(task.getTaskType()).remove(key);
+        }
+    }
+
+    // id задач со статусом status, большие afterId, по возрастанию id, пока action возвращает true;
+    // начало выборки находится спуском по дереву за O(log n)
+    void forEachWithStatus(TaskType type, TaskStatus status, int afterId, IntPredicate action) {
+        Iterator<Task> tasks = byStatus.get(type).get(status).valuesAfter(afterId);
+        while (tasks.hasNext()) {
+            if (!action.test(tasks.next().getId())) {
+                return;
+            }
+        }
+    }
+
+    // id задач типа type с временем начала в [from, to), идущих после ключа after (null - с from),
+    // по возрастанию времени, пока action возвращает true
+    void forEachStartingIn(TaskType type, LocalDateTime from, LocalDateTime to, StartKey after, IntPredicate action) {
+        StartKey lower = new StartKey(from, Integer.MIN_VALUE);
+        boolean afterCursor = after != null && after.compareTo(lower) >= 0;
+        if (afterCursor) {
+            lower = after;
+        }
+        StartKey upper = new StartKey(to, Integer.MIN_VALUE);
+        if (lower.compareTo(upper) < 0) {
+            for (StartKey key : byStart.get(type).subSet(lower, !afterCursor, upper, false)) {
+                if (!action.test(key.id())) {
+                    return;
+                }
+            }
+        }
+    }
+}
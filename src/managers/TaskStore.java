@@ -0,0 +1,38 @@
+package managers;
+
+import tasks.Task;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+// Хранилище задач под InMemoryTaskManager. Менеджер один раз читает из него сохраненные задачи,
+// а затем в конце каждой изменяющей операции передает ее изменения одним вызовом apply,
+// поэтому способ хранения меняется без изменения логики менеджера.
+// Реализации: FileTaskStore (файлы FileBackedTaskManager во всех форматах и режимах) и его снимок CSV
+// CsvTaskStore, LogTaskStore (журнал с дописыванием), BTreeTaskStore (B+-дерево из страниц для наборов
+// больше памяти). Изменения приходят из потоков, изменяющих менеджер, но не параллельно;
+// find может вызываться читающими потоками одновременно с apply
+public interface TaskStore extends AutoCloseable {
+
+    // все сохраненные задачи в любом порядке
+    void load(Consumer<Task> action);
+
+    // наибольший выданный id, 0 - если не сохранялся
+    int highWaterMark();
+
+    void saveHighWaterMark(int highWaterMark);
+
+    // изменения одной операции в порядке их появления; одна задача может встретиться несколько раз
+    void apply(List<TaskChange> changes);
+
+    // одна задача без чтения остальных - нужна менеджеру, который держит тексты задач вне памяти
+    Optional<Task> find(int id);
+
+    // все примененные изменения оказываются на диске
+    default void flush() {
+    }
+
+    @Override
+    void close();
+}
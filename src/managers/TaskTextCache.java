@@ -0,0 +1,70 @@
+package managers;
+
+import exceptions.ManagerSaveException;
+import tasks.Task;
+import tasks.TaskText;
+import tasks.TaskTextSource;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Ограниченный LRU-кэш названий и описаний задач, выгруженных из памяти. Промах читает задачу
+// из хранилища через TaskStore.find без блокировки кэша: хранилище может в это время применять
+// изменения и само обращаться к тексту задач (эпик кодируется заново при изменении подзадачи)
+class TaskTextCache implements TaskTextSource {
+    private final TaskStore store;
+    private final Map<Integer, TaskText> texts;
+
+    TaskTextCache(TaskStore store, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Размер кэша текстов должен быть положительным");
+        }
+        this.store = store;
+        this.texts = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, TaskText> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    @Override
+    public TaskText load(int id) {
+        synchronized (this) {
+            TaskText text = texts.get(id);
+            if (text != null) {
+                return text;
+            }
+        }
+        Task task = store.find(id)
+                .orElseThrow(() -> new ManagerSaveException("Задача " + id + " не найдена в хранилище"));
+        TaskText text = new TaskText(task.getTaskName(), task.getTaskDescription());
+        synchronized (this) {
+            texts.put(id, text);
+        }
+        return text;
+    }
+
+    // текст только что сохраненной задачи уже известен, поэтому попадает в кэш без чтения из хранилища;
+    // задача, чей текст уже выгружен (эпик после пересчета), не меняется
+    void detach(Task task) {
+        if (task.isTextDetached()) {
+            return;
+        }
+        synchronized (this) {
+            texts.put(task.getId(), new TaskText(task.getTaskName(), task.getTaskDescription()));
+        }
+        task.detachText(this);
+    }
+
+    // обратное detach: текст читается, пока запись задачи в хранилище еще не удалена и не заменена
+    void attach(Task task) {
+        if (task.isTextDetached()) {
+            task.attachText(load(task.getId()));
+        }
+    }
+
+    synchronized void invalidate(int id) {
+        texts.remove(id);
+    }
+}
@@ -0,0 +1,165 @@
+package managers;
+
+import exceptions.ManagerSaveException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Отложенное сохранение: markDirty только увеличивает номер версии, а поток сохранения вызывает writer
+// не раньше чем через delayMillis после первого несохраненного изменения или сразу после maxChanges изменений.
+// Серия изменений за это время превращается в одну запись. writer сам берет согласованное состояние,
+// причем не старее версии, прочитанной перед его вызовом, поэтому после записи эта версия считается сохраненной.
+// flush просит записать немедленно и ждет, пока сохранится версия на момент вызова.
+// После неудачной записи следующая попытка ждет паузу, которая удваивается до MAX_RETRY_DELAY_MILLIS
+// и сбрасывается удачной записью, - лимит изменений и flush не заставляют повторять ее сразу
+class WriteBehindSaver implements AutoCloseable {
+    static final long DEFAULT_DELAY_MILLIS = 50;
+    static final int DEFAULT_MAX_CHANGES = 100;
+    static final long MAX_RETRY_DELAY_MILLIS = 5_000;
+
+    private final Runnable writer;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Condition written = lock.newCondition();
+    private final Thread thread;
+    private volatile long delayMillis = DEFAULT_DELAY_MILLIS;
+    private volatile int maxChanges = DEFAULT_MAX_CHANGES;
+    private long version; // номер последнего изменения
+    private long writtenVersion; // номер последнего сохраненного изменения
+    private boolean flushRequested;
+    private boolean closed;
+    private RuntimeException failure; // ошибка последней записи, сбрасывается удачной
+    private long retryDelayMillis; // пауза перед повтором неудачной записи, 0 - последняя запись удалась
+
+    WriteBehindSaver(Runnable writer) {
+        this.writer = writer;
+        thread = new Thread(this::run, "write-behind-saver");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void setLimits(long delayMillis, int maxChanges) {
+        if (delayMillis < 0 || maxChanges < 1) {
+            throw new IllegalArgumentException("Некорректные параметры отложенного сохранения");
+        }
+        this.delayMillis = delayMillis;
+        this.maxChanges = maxChanges;
+        lock.lock();
+        try {
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void markDirty() {
+        lock.lock();
+        try {
+            version++;
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void flush() {
+        lock.lock();
+        try {
+            long target = version;
+            if (writtenVersion >= target) {
+                return;
+            }
+            flushRequested = true;
+            changed.signal();
+            while (writtenVersion < target) {
+                if (failure != null) {
+                    throw new ManagerSaveException("Ошибка отложенного сохранения: " + failure.getMessage());
+                }
+                if (!thread.isAlive()) {
+                    throw new ManagerSaveException("Отложенное сохранение остановлено");
+                }
+                written.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // несохраненные изменения записываются до остановки потока
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            if (failure != null && writtenVersion < version) {
+                throw new ManagerSaveException("Ошибка отложенного сохранения: " + failure.getMessage());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            long target;
+            lock.lock();
+            try {
+                while (version == writtenVersion && !closed) {
+                    changed.awaitUninterruptibly();
+                }
+                if (version == writtenVersion) {
+                    return;
+                }
+                boolean retrying = retryDelayMillis > 0;
+                long remaining = TimeUnit.MILLISECONDS.toNanos(retrying ? retryDelayMillis : delayMillis);
+                while (remaining > 0 && !closed
+                        && (retrying || !flushRequested && version - writtenVersion < maxChanges)) {
+                    try {
+                        remaining = changed.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        remaining = 0;
+                    }
+                }
+                flushRequested = false;
+                target = version;
+            } finally {
+                lock.unlock();
+            }
+            RuntimeException error = null;
+            try {
+                writer.run();
+            } catch (RuntimeException e) {
+                error = e;
+            }
+            lock.lock();
+            try {
+                failure = error;
+                if (error == null) {
+                    writtenVersion = Math.max(writtenVersion, target);
+                    retryDelayMillis = 0;
+                } else {
+                    retryDelayMillis = Math.min(MAX_RETRY_DELAY_MILLIS,
+                            retryDelayMillis == 0 ? Math.max(1, delayMillis) : retryDelayMillis * 2);
+                }
+                written.signalAll();
+                if (closed && error != null) {
+                    return; // при закрытии неудачная запись не повторяется, ошибку получит close
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -1,14 +1,25 @@
 package tasks;
 
+import enums.TaskStatus;
 import enums.TaskType;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeMap;
 
 public class Epic extends Task {
-    private final ArrayList<Integer> subTasksIds;
+    private final List<Integer> subTasksIds;
     private LocalDateTime endTime;
 
+    // агрегаты подзадач: статус и время эпика пересчитываются по ним без обхода всех подзадач
+    private final transient int[] statusCounters = new int[TaskStatus.values().length];
+    private final transient TreeMap<LocalDateTime, Integer> startTimes = new TreeMap<>();
+    private final transient TreeMap<LocalDateTime, Integer> endTimes = new TreeMap<>();
+
     public Epic(String taskName, String taskDescription) {
         super(taskName, taskDescription);
         subTasksIds = new ArrayList<>();
@@ -20,14 +31,55 @@ public class Epic extends Task {
     public Epic(Epic epic) {
         super(epic);
         super.taskType = TaskType.EPIC;
-        this.subTasksIds = epic.subTasksIds;
-        this.endTime = DEFAULT_TIME;
+        this.subTasksIds = new ArrayList<>(Objects.requireNonNullElseGet(epic.subTasksIds, ArrayList::new));
+        this.endTime = Objects.requireNonNullElse(epic.endTime, DEFAULT_TIME);
+
+        if (epic.statusCounters != null) { // у эпика, созданного Gson, агрегатов нет
+            System.arraycopy(epic.statusCounters, 0, statusCounters, 0, statusCounters.length);
+            startTimes.putAll(epic.startTimes);
+            endTimes.putAll(epic.endTimes);
+        }
+    }
+
+    // Опубликованная версия эпика для читателей снимка: поля копируются, а список id подзадач не копируется -
+    // передается неизменяемый список, общий с другими версиями. Агрегаты у версии пустые, изменять ее нельзя
+    public Epic(Epic epic, List<Integer> subTasksIds) {
+        super(epic);
+        super.taskType = TaskType.EPIC;
+        this.subTasksIds = subTasksIds;
+        this.endTime = Objects.requireNonNullElse(epic.endTime, DEFAULT_TIME);
     }
 
-    public ArrayList<Integer> getSubTasksIds() {
+    public List<Integer> getSubTasksIds() {
         return subTasksIds;
     }
 
+    public void addSubTask(SubTask subTask) {
+        subTasksIds.add(subTask.getId());
+        countSubTask(subTask, 1);
+        updateParameters();
+    }
+
+    public void replaceSubTask(SubTask oldSubTask, SubTask newSubTask) {
+        countSubTask(oldSubTask, -1);
+        countSubTask(newSubTask, 1);
+        updateParameters();
+    }
+
+    public void removeSubTask(SubTask subTask) {
+        subTasksIds.remove((Integer) subTask.getId());
+        countSubTask(subTask, -1);
+        updateParameters();
+    }
+
+    public void clearSubTasks() {
+        subTasksIds.clear();
+        Arrays.fill(statusCounters, 0);
+        startTimes.clear();
+        endTimes.clear();
+        updateParameters();
+    }
+
     public void setEndTime(LocalDateTime endTime) {
         this.endTime = endTime;
     }
@@ -36,4 +88,38 @@ public class Epic extends Task {
     public LocalDateTime getEndTime() {
         return endTime;
     }
+
+    private void countSubTask(SubTask subTask, int delta) {
+        statusCounters[subTask.getTaskStatus().ordinal()] += delta;
+        countTime(startTimes, subTask.getTaskStartTime(), delta);
+        countTime(endTimes, subTask.getEndTime(), delta);
+    }
+
+    private static void countTime(TreeMap<LocalDateTime, Integer> times, LocalDateTime time, int delta) {
+        times.merge(time, delta, (count, change) -> count + change == 0 ? null : count + change);
+    }
+
+    private void updateParameters() {
+        boolean statusInProgress = statusCounters[TaskStatus.IN_PROGRESS.ordinal()] > 0;
+        boolean statusNew = statusCounters[TaskStatus.NEW.ordinal()] > 0;
+        boolean statusDone = statusCounters[TaskStatus.DONE.ordinal()] > 0;
+
+        if (statusInProgress || statusNew && statusDone) {
+            setTaskStatus(TaskStatus.IN_PROGRESS);
+        } else if (statusDone && !statusNew) {
+            setTaskStatus(TaskStatus.DONE);
+        } else {
+            setTaskStatus(TaskStatus.NEW);
+        }
+
+        if (startTimes.isEmpty()) {
+            taskStartTime = DEFAULT_TIME;
+            endTime = DEFAULT_TIME;
+            taskDuration = 0;
+        } else {
+            taskStartTime = startTimes.firstKey();
+            endTime = endTimes.lastKey();
+            taskDuration = Duration.between(taskStartTime, endTime).toMinutes();
+        }
+    }
 }
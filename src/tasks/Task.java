@@ -13,8 +13,9 @@ public class Task {
     public static final LocalDateTime DEFAULT_TIME = LocalDateTime.of(2000, 1, 1, 1,1);
 
     private int id = 0; // 0 используется для блокировки многократного добавления одного объекта
-    private final String taskName;
-    private final String taskDescription;
+    private String taskName; // null, если текст выгружен в textSource
+    private String taskDescription;
+    private transient TaskTextSource textSource;
     protected TaskType taskType;
     private TaskStatus taskStatus;
     protected LocalDateTime taskStartTime = DEFAULT_TIME;
@@ -84,11 +85,29 @@ public class Task {
     }
 
     public String getTaskName() {
-        return taskName;
+        return textSource == null ? taskName : textSource.load(id).name();
     }
 
     public String getTaskDescription() {
-        return taskDescription;
+        return textSource == null ? taskDescription : textSource.load(id).description();
+    }
+
+    // название и описание больше не хранятся в задаче и при чтении берутся из source по id задачи
+    public void detachText(TaskTextSource source) {
+        this.textSource = source;
+        this.taskName = null;
+        this.taskDescription = null;
+    }
+
+    // название и описание снова хранятся в задаче
+    public void attachText(TaskText text) {
+        this.textSource = null;
+        this.taskName = text.name();
+        this.taskDescription = text.description();
+    }
+
+    public boolean isTextDetached() {
+        return textSource != null;
     }
 
     public LocalDateTime getTaskStartTime() {
@@ -115,9 +134,9 @@ public class Task {
     public String toString() {
         return id + "," +
                 taskType + "," +
-                taskName + "," +
+                getTaskName() + "," +
                 taskStatus + "," +
-                taskDescription + "," +
+                getTaskDescription() + "," +
                 taskStartTime + "," +
                 taskDuration;
     }
@@ -0,0 +1,5 @@
+package tasks;
+
+// название и описание задачи - часть задачи, которая может храниться вне памяти
+public record TaskText(String name, String description) {
+}
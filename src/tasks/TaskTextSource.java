@@ -0,0 +1,7 @@
+package tasks;
+
+// откуда задача с выгруженным текстом берет название и описание по своему id
+public interface TaskTextSource {
+
+    TaskText load(int id);
+}
@@ -0,0 +1,68 @@
+import enums.TaskStatus;
+import managers.ConcurrentHistoryManager;
+import managers.HistoryManager;
+import managers.InMemoryHistoryManager;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tasks.Task;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+public class ConcurrentHistoryManagerTest {
+    private static final int THREADS = 8;
+    private static final int TASKS = 500;
+
+    private HistoryManager historyManager;
+    private final List<Task> tasks = new ArrayList<>();
+
+    @BeforeEach
+    public void setDefaultValues() {
+        historyManager = new ConcurrentHistoryManager(new InMemoryHistoryManager(TASKS));
+        for (int id = 1; id <= TASKS; id++) {
+            Task task = new Task("task" + id, "description", TaskStatus.NEW);
+            task.setId(id);
+            tasks.add(task);
+        }
+    }
+
+    @Test
+    public void allConcurrentViewsReachHistoryWithoutDuplicates() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int offset = t;
+            futures.add(executor.submit(() -> {
+                startSignal.await();
+                for (int i = 0; i < TASKS * 4; i++) {
+                    historyManager.addToHistory(tasks.get((i + offset * 31) % TASKS));
+                }
+                return null;
+            }));
+        }
+        startSignal.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        List<Task> history = historyManager.getHistory();
+        Assertions.assertEquals(TASKS, history.size(), "Просмотры потеряны или задвоены");
+        Assertions.assertEquals(new HashSet<>(tasks), new HashSet<>(history));
+    }
+
+    @Test
+    public void bufferedViewDoesNotOutliveRemove() {
+        historyManager.addToHistory(tasks.get(0));
+        historyManager.addToHistory(tasks.get(1));
+        historyManager.remove(tasks.get(0).getId());
+
+        Set<Task> history = new HashSet<>(historyManager.getHistory());
+        Assertions.assertEquals(Set.of(tasks.get(1)), history, "Удаленная задача вернулась из буфера");
+    }
+}
@@ -0,0 +1,173 @@
+import enums.TaskStatus;
+import exceptions.OverlapException;
+import managers.Managers;
+import managers.TaskManager;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tasks.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.*;
+
+public class ConcurrentTaskManagerTest {
+    private static final int THREADS = 8;
+    private static final int OPERATIONS = 2000;
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    private TaskManager manager;
+    private final List<Integer> epicIds = new ArrayList<>();
+
+    @BeforeEach
+    public void setDefaultValues() {
+        manager = Managers.getDefaultConcurrent();
+        for (int i = 0; i < 4; i++) {
+            Epic epic = new Epic("epic" + i, "description");
+            manager.addEpic(epic);
+            epicIds.add(epic.getId());
+        }
+    }
+
+    @Test
+    public void invariantsHoldUnderConcurrentWritesAndReads() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            long seed = t;
+            futures.add(executor.submit(() -> {
+                startSignal.await();
+                runRandomOperations(new Random(seed));
+                return null;
+            }));
+        }
+        startSignal.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertScheduleIsConsistent(manager.getPrioritizedTasks());
+        for (int epicId : epicIds) {
+            assertEpicIsConsistent(epicId);
+        }
+    }
+
+    @Test
+    public void listsAreConsistentSnapshots() {
+        manager.addTask(new Task("task1", "description", TaskStatus.NEW));
+        List<Task> before = manager.getTasksList();
+        List<Epic> epicsBefore = manager.getEpicsList();
+
+        manager.addTask(new Task("task2", "description", TaskStatus.NEW));
+        manager.addSubTask(new SubTask("subTask", "description", TaskStatus.DONE), epicIds.getFirst());
+
+        Assertions.assertEquals(1, before.size(), "Снимок изменился после записи");
+        Assertions.assertEquals(2, manager.getTasksList().size(), "Новая версия не опубликована");
+        Assertions.assertEquals(TaskStatus.NEW, epicsBefore.getFirst().getTaskStatus(), "Эпик в снимке изменился");
+        Assertions.assertEquals(TaskStatus.DONE, manager.getEpicsList().getFirst().getTaskStatus());
+    }
+
+    @Test
+    public void batchSubTaskChangesPublishFinalEpic() {
+        int epicId = epicIds.getFirst();
+        List<SubTask> subTasks = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            SubTask subTask = new SubTask("subTask" + i, "description", TaskStatus.DONE);
+            subTask.setEpicId(epicId);
+            subTasks.add(subTask);
+        }
+        manager.addSubTasks(subTasks);
+        Epic published = manager.getEpic(epicId).orElseThrow();
+
+        manager.removeSubTasks(subTasks.subList(0, 99).stream().map(Task::getId).toList());
+        manager.removeEpic(epicIds.get(1));
+
+        Assertions.assertEquals(100, published.getSubTasksIds().size(), "Опубликованный эпик изменился");
+        Epic epic = manager.getEpic(epicId).orElseThrow();
+        Assertions.assertEquals(List.of(subTasks.getLast().getId()), epic.getSubTasksIds());
+        Assertions.assertEquals(TaskStatus.DONE, epic.getTaskStatus());
+        Assertions.assertTrue(manager.getEpic(epicIds.get(1)).isEmpty(), "Удаленный эпик остался в снимке");
+    }
+
+    @Test
+    public void iteratorsReadSnapshotFromCursor() {
+        int[] ids = new int[5];
+        for (int i = 0; i < ids.length; i++) {
+            Task task = new Task("task" + i, "description", TaskStatus.NEW, START.plusHours(i), 30);
+            manager.addTask(task);
+            ids[i] = task.getId();
+        }
+        Iterator<Task> afterSecond = manager.tasksAfter(ids[1]);
+        manager.removeTask(ids[2]);
+
+        Assertions.assertEquals(ids[2], afterSecond.next().getId(), "Итератор не читает снимок");
+        Assertions.assertEquals(ids[3], manager.tasksAfter(ids[1]).next().getId());
+        Assertions.assertEquals(ids[4], manager.prioritizedAfter(START.plusHours(3), ids[3]).next().getId());
+    }
+
+    private void runRandomOperations(Random random) {
+        for (int i = 0; i < OPERATIONS; i++) {
+            LocalDateTime startTime = START.plusMinutes(random.nextInt(100_000));
+            TaskStatus status = TaskStatus.values()[random.nextInt(TaskStatus.values().length)];
+            try {
+                switch (random.nextInt(6)) {
+                    case 0 -> manager.addTask(new Task("task", "description", status, startTime, 30));
+                    case 1 -> manager.addSubTask(new SubTask("subTask", "description", status, startTime, 30),
+                            epicIds.get(random.nextInt(epicIds.size())));
+                    case 2 -> {
+                        List<SubTask> subTasks = manager.getSubTasksList();
+                        if (!subTasks.isEmpty()) {
+                            SubTask subTask = subTasks.get(random.nextInt(subTasks.size()));
+                            manager.updateSubTask(new SubTask("updated", "description", status), subTask.getId());
+                        }
+                    }
+                    case 3 -> {
+                        List<Task> tasks = manager.getTasksList();
+                        if (!tasks.isEmpty()) {
+                            manager.removeTask(tasks.get(random.nextInt(tasks.size())).getId());
+                        }
+                    }
+                    case 4 -> {
+                        List<SubTask> subTasks = manager.getSubTasksList();
+                        if (!subTasks.isEmpty()) {
+                            manager.removeSubTask(subTasks.get(random.nextInt(subTasks.size())).getId());
+                        }
+                    }
+                    default -> assertScheduleIsConsistent(manager.getPrioritizedTasks());
+                }
+            } catch (OverlapException ignored) {
+                // случайное время может пересечься с уже запланированной задачей
+            }
+        }
+    }
+
+    private void assertScheduleIsConsistent(List<Task> prioritized) {
+        for (int i = 1; i < prioritized.size(); i++) {
+            Task previous = prioritized.get(i - 1);
+            Task current = prioritized.get(i);
+            Assertions.assertTrue(previous.getTaskStartTime().isBefore(current.getTaskStartTime()),
+                    "Нарушен порядок приоритетных задач");
+            Assertions.assertFalse(previous.getEndTime().isAfter(current.getTaskStartTime()),
+                    "Задачи пересекаются");
+        }
+    }
+
+    private void assertEpicIsConsistent(int epicId) {
+        Optional<Epic> epic = manager.getEpic(epicId);
+        Assertions.assertTrue(epic.isPresent());
+        List<SubTask> subTasks = manager.getSubTasksListByEpic(epicId);
+        Assertions.assertEquals(epic.get().getSubTasksIds().size(), subTasks.size(), "Потеряны подзадачи эпика");
+
+        boolean allNew = subTasks.stream().allMatch(subTask -> subTask.getTaskStatus() == TaskStatus.NEW);
+        boolean allDone = subTasks.stream().allMatch(subTask -> subTask.getTaskStatus() == TaskStatus.DONE);
+        TaskStatus expected = allNew ? TaskStatus.NEW : allDone ? TaskStatus.DONE : TaskStatus.IN_PROGRESS;
+        Assertions.assertEquals(expected, epic.get().getTaskStatus(), "Неверный статус эпика " + epicId);
+    }
+}
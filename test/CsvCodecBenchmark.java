@@ -0,0 +1,122 @@
+import enums.TaskStatus;
+import enums.TaskType;
+import managers.FileBackedTaskManager;
+import tasks.Epic;
+import tasks.SubTask;
+import tasks.Task;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Сравнение записи и разбора строк CSV-снимка: прежний путь (toString задачи, String.split,
+// LocalDateTime.parse и Duration.parse) против FileBackedTaskManager.taskToString/taskFromString.
+// Запуск: java CsvCodecBenchmark [число задач]; печатает наносекунды на задачу после прогрева
+public class CsvCodecBenchmark {
+    private static final int ROUNDS = 10;
+    private static final int WARMUP_ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        List<Task> tasks = sample(count);
+        List<String> lines = new ArrayList<>(count);
+        tasks.forEach(task -> lines.add(task.toString()));
+
+        long sink = 0;
+        long[] best = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (Task task : tasks) {
+                sink += task.toString().length();
+            }
+            long toStringTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (Task task : tasks) {
+                sink += FileBackedTaskManager.taskToString(task).length();
+            }
+            long codecWriteTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (String line : lines) {
+                sink += legacyTaskFromString(line).getId();
+            }
+            long splitTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (String line : lines) {
+                sink += FileBackedTaskManager.taskFromString(line).getId();
+            }
+            long codecReadTime = System.nanoTime() - start;
+
+            if (round >= WARMUP_ROUNDS) {
+                best[0] = Math.min(best[0], toStringTime);
+                best[1] = Math.min(best[1], codecWriteTime);
+                best[2] = Math.min(best[2], splitTime);
+                best[3] = Math.min(best[3], codecReadTime);
+            }
+        }
+        System.out.printf("запись: toString %6.1f нс, кодек %6.1f нс%n", (double) best[0] / count,
+                (double) best[1] / count);
+        System.out.printf("разбор: split    %6.1f нс, кодек %6.1f нс%n", (double) best[2] / count,
+                (double) best[3] / count);
+        System.out.println("(контрольная сумма " + sink + ")");
+    }
+
+    private static List<Task> sample(int count) {
+        List<Task> tasks = new ArrayList<>(count);
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 9, 0);
+        for (int i = 1; i <= count; i++) {
+            Task task;
+            switch (i % 3) {
+                case 0 -> task = new Task("Задача " + i, "Описание задачи " + i, TaskStatus.NEW,
+                        start.plusMinutes(i * 30L), 30);
+                case 1 -> {
+                    Epic epic = new Epic("Эпик " + i, "Описание эпика " + i);
+                    epic.setTaskStartTime(start.plusMinutes(i * 30L));
+                    task = epic;
+                }
+                default -> {
+                    SubTask subTask = new SubTask("Подзадача " + i, "Описание подзадачи " + i,
+                            TaskStatus.IN_PROGRESS, start.plusMinutes(i * 30L), 90);
+                    subTask.setEpicId(i - 1);
+                    task = subTask;
+                }
+            }
+            task.setId(i);
+            tasks.add(task);
+        }
+        return tasks;
+    }
+
+    // разбор строки до перехода на кодек, с поддержкой длительности числом минут
+    private static Task legacyTaskFromString(String value) {
+        String[] taskData = value.split(",");
+        TaskType taskType = TaskType.valueOf(taskData[1]);
+        int taskId = Integer.parseInt(taskData[0]);
+        TaskStatus taskStatus = TaskStatus.valueOf(taskData[3]);
+        LocalDateTime taskStartTime = LocalDateTime.parse(taskData[5]);
+        long taskDuration = taskData[6].startsWith("P")
+                ? Duration.parse(taskData[6]).toMinutes()
+                : Long.parseLong(taskData[6]);
+        Task task;
+        switch (taskType) {
+            case EPIC -> {
+                Epic epic = new Epic(taskData[2], taskData[4]);
+                epic.setTaskStatus(taskStatus);
+                epic.setTaskStartTime(taskStartTime);
+                epic.setTaskDuration(taskDuration);
+                task = epic;
+            }
+            case SUBTASK -> {
+                SubTask subTask = new SubTask(taskData[2], taskData[4], taskStatus, taskStartTime, taskDuration);
+                subTask.setEpicId(Integer.parseInt(taskData[7]));
+                task = subTask;
+            }
+            default -> task = new Task(taskData[2], taskData[4], taskStatus, taskStartTime, taskDuration);
+        }
+        task.setId(taskId);
+        return task;
+    }
+}
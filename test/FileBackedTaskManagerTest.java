@@ -1,4 +1,7 @@
+import enums.SaveMode;
+import enums.SyncMode;
 import enums.TaskStatus;
+import exceptions.ManagerSaveException;
 import managers.FileBackedTaskManager;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.io.TempDir;
@@ -8,8 +11,16 @@ import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static managers.FileBackedTaskManager.HEAD_LINE_IN_AUTOSAVE_FILE;
 
@@ -232,5 +243,490 @@ public class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskMan
             }
         }
     }
-}
 
+    @Test
+    public void idsAreNotReusedAfterReload() {
+        taskManager.addTask(task1);
+        taskManager.addTask(task2);
+        int removedId = task2.getId();
+        taskManager.removeTask(removedId);
+
+        FileBackedTaskManager reloaded = FileBackedTaskManager.loadFromFile(taskManager.getAutoSave());
+        Task newTask = new Task("Новая задача", "Описание", TaskStatus.NEW);
+        reloaded.addTask(newTask);
+
+        Assertions.assertTrue(reloaded.getTask(task1.getId()).isPresent(), "Задача не загружена");
+        Assertions.assertTrue(newTask.getId() > removedId, "Выдан id, который уже использовался");
+    }
+
+    @Test
+    public void damagedIdCounterIsReportedAsSaveError() throws IOException {
+        taskManager.addTask(task1);
+        File autoSave = taskManager.getAutoSave();
+        Path counter = Path.of(autoSave.getPath() + FileBackedTaskManager.HIGH_WATER_MARK_SUFFIX);
+        Assertions.assertTrue(Files.exists(counter), "Счетчик id не сохранен");
+        Assertions.assertFalse(Files.exists(Path.of(counter + ".tmp")), "Остался временный файл счетчика");
+
+        Files.writeString(counter, "");
+        Assertions.assertThrows(ManagerSaveException.class, () -> FileBackedTaskManager.loadFromFile(autoSave),
+                "Оборванный счетчик id прочитан");
+    }
+
+    @Test
+    public void batchIsSavedAndLoaded() {
+        taskManager.addEpics(List.of(epic1));
+        subTask1Epic1.setEpicId(epic1.getId());
+        taskManager.addTasks(List.of(task1, task2));
+        taskManager.addSubTasks(List.of(subTask1Epic1));
+        taskManager.removeTasks(List.of(task2.getId()));
+
+        FileBackedTaskManager reloaded = FileBackedTaskManager.loadFromFile(taskManager.getAutoSave());
+
+        Assertions.assertEquals(List.of(task1), reloaded.getTasksList(), "Пакет задач не сохранен");
+        Assertions.assertEquals(List.of(subTask1Epic1.getId()),
+                reloaded.getEpic(epic1.getId()).orElseThrow().getSubTasksIds(), "Подзадачи пакета не загружены");
+    }
+
+    @Test
+    public void journalModeAppendsRecordsAndReplaysThem() throws IOException {
+        File file = taskManager.getAutoSave();
+        FileBackedTaskManager journaled = FileBackedTaskManager.loadFromFile(file, SaveMode.JOURNAL);
+        journaled.addTask(task1);
+        journaled.addEpic(epic1);
+        journaled.addSubTask(subTask1Epic1, epic1.getId());
+        journaled.updateTask(new Task("Обновление задачи", "Описание", TaskStatus.DONE), task1.getId());
+        journaled.addTask(task2);
+        journaled.removeTask(task2.getId());
+
+        Path journal = Path.of(file.getPath() + FileBackedTaskManager.JOURNAL_SUFFIX);
+        Assertions.assertTrue(Files.readString(file.toPath()).isEmpty(), "Снимок перезаписан в режиме журнала");
+        Assertions.assertEquals(7, Files.readAllLines(journal).size(), "Не по одной записи на изменение");
+
+        Files.writeString(journal, "99,TASK,оборванная", StandardOpenOption.APPEND);
+        FileBackedTaskManager reloaded = FileBackedTaskManager.loadFromFile(file, SaveMode.JOURNAL);
+        Assertions.assertEquals(TaskStatus.DONE, reloaded.getTask(task1.getId()).orElseThrow().getTaskStatus());
+        Assertions.assertTrue(reloaded.getTask(task2.getId()).isEmpty(), "Удаленная задача восстановлена");
+        Assertions.assertTrue(reloaded.getTask(99).isEmpty(), "Оборванная запись восстановлена");
+        Assertions.assertEquals(List.of(subTask1Epic1.getId()),
+                reloaded.getEpic(epic1.getId()).orElseThrow().getSubTasksIds());
+
+        FileBackedTaskManager compacted = FileBackedTaskManager.loadFromFile(file);
+        Assertions.assertFalse(Files.exists(journal), "Журнал не перенесен в снимок");
+        Assertions.assertEquals(reloaded.getTasksList(), compacted.getTasksList());
+    }
+
+    @Test
+    public void groupCommitKeepsConcurrentWrites() throws Exception {
+        File file = taskManager.getAutoSave();
+        FileBackedTaskManager journaled = FileBackedTaskManager.loadFromFile(file, SaveMode.JOURNAL, SyncMode.GROUP);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 50; i++) {
+                    journaled.addTask(new Task("Задача", "Описание", TaskStatus.NEW));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        journaled.close();
+
+        FileBackedTaskManager reloaded = FileBackedTaskManager.loadFromFile(file, SaveMode.JOURNAL, SyncMode.EACH);
+        Assertions.assertEquals(200, reloaded.getTasksList().size(), "Часть операций не попала в журнал");
+        reloaded.addTask(task1);
+        reloaded.close();
+        Assertions.assertTrue(FileBackedTaskManager.loadFromFile(file).getTask(task1.getId()).isPresent());
+    }
+
+    @Test
+    public void journalRefusesWritesAfterFailedWrite(@TempDir Path dir) throws IOException {
+        Path full = Path.of("/dev/full"); // любая запись в него завершается ошибкой ENOSPC
+        Assumptions.assumeTrue(Files.isWritable(full), "Нет /dev/full");
+        for (SyncMode syncMode : SyncMode.values()) {
+            Path file = Files.createFile(dir.resolve(syncMode + ".csv"));
+            Files.createSymbolicLink(Path.of(file + FileBackedTaskManager.JOURNAL_SUFFIX), full);
+            FileBackedTaskManager journaled = new FileBackedTaskManager(file.toString(), SaveMode.JOURNAL, syncMode);
+
+            Assertions.assertThrows(ManagerSaveException.class,
+                    () -> journaled.addTask(new Task("Задача", "Описание", TaskStatus.NEW)), syncMode.toString());
+            Assertions.assertThrows(ManagerSaveException.class,
+                    () -> journaled.addTask(new Task("Задача", "Описание", TaskStatus.NEW)),
+                    "Журнал принял операцию после ошибки записи: " + syncMode);
+            Assertions.assertDoesNotThrow(journaled::close, "Журнал дописывался при закрытии после ошибки: "
+                    + syncMode);
+        }
+    }
+
+    @Test
+    public void compactionMovesJournalIntoSnapshot() throws IOException {
+        File file = taskManager.getAutoSave();
+        FileBackedTaskManager journaled = FileBackedTaskManager.loadFromFile(file, SaveMode.JOURNAL);
+        journaled.addTask(task1);
+        journaled.addEpic(epic1);
+        journaled.addSubTask(subTask1Epic1, epic1.getId());
+        journaled.addTask(task2);
+        journaled.removeTask(task2.getId());
+        journaled.compactJournal();
+
+        Path journal = Path.of(file.getPath() + FileBackedTaskManager.JOURNAL_SUFFIX);
+        Assertions.assertEquals(0, Files.size(journal), "Журнал не очищен после сжатия");
+        Assertions.assertEquals(4, Files.readAllLines(file.toPath()).size(), "Снимок не содержит задачи");
+        Assertions.assertFalse(Files.exists(Path.of(journal + FileBackedTaskManager.COMPACTING_SUFFIX)));
+
+        journaled.addTask(task2);
+        journaled.close();
+        Assertions.assertEquals(1, Files.readAllLines(journal).size(), "Запись после сжатия не в журнале");
+        FileBackedTaskManager reloaded = FileBackedTaskManager.loadFromFile(file, SaveMode.JOURNAL);
+        Assertions.assertEquals(List.of(task1, task2), reloaded.getTasksList());
+        Assertions.assertEquals(List.of(subTask1Epic1.getId()),
+                reloaded.getEpic(epic1.getId()).orElseThrow().getSubTasksIds());
+    }
+
+    @Test
+    public void backgroundCompactionKeepsConcurrentWrites() throws Exception {
+        File file = taskManager.getAutoSave();
+        FileBackedTaskManager journaled = FileBackedTaskManager.loadFromFile(file, SaveMode.JOURNAL);
+        journaled.setCompactionThreshold(50);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 200; i++) {
+                    journaled.addTask(new Task("Задача", "Описание", TaskStatus.NEW));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        journaled.close();
+
+        Path journal = Path.of(file.getPath() + FileBackedTaskManager.JOURNAL_SUFFIX);
+        Assertions.assertTrue(Files.readAllLines(journal).size() < 800, "Журнал не сжимался");
+        Assertions.assertEquals(800, FileBackedTaskManager.loadFromFile(file, SaveMode.JOURNAL)
+                .getTasksList().size(), "Часть операций потеряна при сжатии");
+    }
+
+    @Test
+    public void loadFinishesInterruptedCompaction() throws IOException {
+        File file = taskManager.getAutoSave();
+        task1.setId(1);
+        task2.setId(2);
+        Files.writeString(file.toPath(), HEAD_LINE_IN_AUTOSAVE_FILE + "\n" + task1 + "\n");
+        Path journal = Path.of(file.getPath() + FileBackedTaskManager.JOURNAL_SUFFIX);
+        Path compacting = Path.of(journal + FileBackedTaskManager.COMPACTING_SUFFIX);
+        Files.writeString(compacting, task2 + "\n-1\n");
+        Files.writeString(journal, task1 + "\n");
+
+        FileBackedTaskManager reloaded = FileBackedTaskManager.loadFromFile(file, SaveMode.JOURNAL);
+
+        Assertions.assertEquals(List.of(task1, task2), reloaded.getTasksList(), "Журналы применены не по порядку");
+        Assertions.assertFalse(Files.exists(compacting), "Незавершенное сжатие не доведено до конца");
+        Assertions.assertEquals(3, Files.readAllLines(file.toPath()).size());
+        reloaded.close();
+    }
+
+    @Test
+    public void binarySnapshotKeepsAllFields(@TempDir Path dir) throws IOException {
+        File file = Files.createFile(dir.resolve("tasks" + FileBackedTaskManager.BINARY_EXTENSION)).toFile();
+        FileBackedTaskManager binary = FileBackedTaskManager.loadFromFile(file);
+        Task scheduled = new Task("Задача, с запятой", "Описание", TaskStatus.DONE,
+                LocalDateTime.of(2025, 3, 1, 10, 15, 42, 7_000), 90);
+        binary.addTask(scheduled);
+        binary.addEpic(epic1);
+        binary.addSubTask(new SubTask("Подзадача", "Описание", TaskStatus.IN_PROGRESS,
+                LocalDateTime.of(1999, 12, 31, 23, 59), 30), epic1.getId());
+
+        FileBackedTaskManager reloaded = FileBackedTaskManager.loadFromFile(file);
+
+        Task loaded = reloaded.getTask(scheduled.getId()).orElseThrow();
+        Assertions.assertEquals(scheduled.getTaskName(), loaded.getTaskName());
+        Assertions.assertEquals(scheduled.getTaskStatus(), loaded.getTaskStatus());
+        Assertions.assertEquals(scheduled.getTaskStartTime(), loaded.getTaskStartTime(), "Потеряны секунды");
+        Assertions.assertEquals(scheduled.getTaskDuration(), loaded.getTaskDuration());
+        Assertions.assertEquals(binary.getSubTasksList().toString(), reloaded.getSubTasksList().toString());
+        Assertions.assertEquals(binary.getEpicsList().toString(), reloaded.getEpicsList().toString());
+        binary.close();
+        reloaded.close();
+    }
+
+    @Test
+    public void convertCsvToSmallerBinary() throws IOException {
+        taskManager.addTask(task1);
+        taskManager.addEpic(epic1);
+        taskManager.addSubTask(subTask1Epic1, epic1.getId());
+        for (int i = 0; i < 100; i++) {
+            taskManager.addTask(new Task("Задача " + i, "Описание", TaskStatus.NEW,
+                    LocalDateTime.of(2025, 1, 1, 0, 0).plusHours(i), 30));
+        }
+        File csv = taskManager.getAutoSave();
+        File binaryFile = new File(csv.getParent(), "converted" + FileBackedTaskManager.BINARY_EXTENSION);
+
+        FileBackedTaskManager.convertToBinary(csv, binaryFile);
+        FileBackedTaskManager converted = FileBackedTaskManager.loadFromFile(binaryFile);
+
+        Assertions.assertEquals(taskManager.getTasksList().toString(), converted.getTasksList().toString());
+        Assertions.assertEquals(taskManager.getSubTasksList().toString(), converted.getSubTasksList().toString());
+        Assertions.assertTrue(binaryFile.length() < csv.length(), "Двоичный снимок не меньше CSV");
+        converted.addTask(task2);
+        Assertions.assertTrue(task2.getId() > subTask1Epic1.getId(), "Счетчик id не перенесен");
+    }
+
+    @Test
+    public void journalCompactionWritesBinarySnapshot(@TempDir Path dir) throws IOException {
+        File file = Files.createFile(dir.resolve("tasks" + FileBackedTaskManager.BINARY_EXTENSION)).toFile();
+        FileBackedTaskManager journaled = FileBackedTaskManager.loadFromFile(file, SaveMode.JOURNAL);
+        journaled.addTask(task1);
+        journaled.addEpic(epic1);
+        journaled.addSubTask(subTask1Epic1, epic1.getId());
+        journaled.compactJournal();
+        journaled.removeTask(task1.getId());
+        journaled.close();
+
+        Assertions.assertEquals('T', Files.readAllBytes(file.toPath())[0], "Снимок записан не в двоичном формате");
+        FileBackedTaskManager reloaded = FileBackedTaskManager.loadFromFile(file);
+        Assertions.assertTrue(reloaded.getTasksList().isEmpty());
+        Assertions.assertEquals(List.of(subTask1Epic1.getId()),
+                reloaded.getEpic(epic1.getId()).orElseThrow().getSubTasksIds());
+        reloaded.close();
+    }
+
+    @Test
+    public void compressedSnapshotSpansBlocksAndIsSmaller(@TempDir Path dir) throws IOException {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            tasks.add(new Task("Задача " + i, "Описание задачи " + i, TaskStatus.values()[i % 3],
+                    LocalDateTime.of(2020, 1, 1, 0, 0).plusMinutes(i * 10L), 5));
+        }
+        File binaryFile = Files.createFile(dir.resolve("tasks" + FileBackedTaskManager.BINARY_EXTENSION)).toFile();
+        File file = Files.createFile(dir.resolve("tasks" + FileBackedTaskManager.COMPRESSED_EXTENSION)).toFile();
+        FileBackedTaskManager binary = FileBackedTaskManager.loadFromFile(binaryFile);
+        binary.addTasks(tasks.stream().map(Task::new).toList());
+        binary.close();
+        FileBackedTaskManager compressed = FileBackedTaskManager.loadFromFile(file, SaveMode.JOURNAL);
+        compressed.addTasks(tasks);
+        compressed.compactJournal();
+        compressed.removeTask(tasks.getFirst().getId());
+        compressed.close();
+
+        FileBackedTaskManager reloaded = FileBackedTaskManager.loadFromFile(file);
+
+        Assertions.assertEquals(compressed.getTasksList().toString(), reloaded.getTasksList().toString());
+        Assertions.assertTrue(file.length() * 3 < binaryFile.length(), "Сжатый снимок не меньше двоичного втрое");
+        reloaded.addTask(task1);
+        FileBackedTaskManager saved = FileBackedTaskManager.loadFromFile(file);
+        Assertions.assertEquals(reloaded.getTasksList().size(), saved.getTasksList().size());
+        reloaded.close();
+        saved.close();
+    }
+
+    @Test
+    public void compressedSnapshotDetectsTornWriteAndCorruptBlock(@TempDir Path dir) throws IOException {
+        File file = Files.createFile(dir.resolve("tasks" + FileBackedTaskManager.COMPRESSED_EXTENSION)).toFile();
+        FileBackedTaskManager compressed = FileBackedTaskManager.loadFromFile(file);
+        compressed.addTask(task1);
+        compressed.addEpic(epic1);
+        compressed.addSubTask(subTask1Epic1, epic1.getId());
+        compressed.close();
+        byte[] data = Files.readAllBytes(file.toPath());
+
+        Files.write(file.toPath(), Arrays.copyOf(data, data.length - 3));
+        Assertions.assertThrows(ManagerSaveException.class, () -> FileBackedTaskManager.loadFromFile(file),
+                "Оборванный снимок прочитан");
+
+        data[20] ^= 1;
+        Files.write(file.toPath(), data);
+        Assertions.assertThrows(ManagerSaveException.class, () -> FileBackedTaskManager.loadFromFile(file),
+                "Поврежденный блок прочитан");
+    }
+
+    @Test
+    public void loadSnapshotLargerThanOneChunk() {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 30_000; i++) {
+            tasks.add(new Task("Задача " + i, "Описание задачи " + i, TaskStatus.values()[i % 3],
+                    LocalDateTime.of(2020, 1, 1, 0, 0).plusMinutes(i * 10L), 5));
+        }
+        taskManager.addTasks(tasks);
+        Assertions.assertTrue(taskManager.getAutoSave().length() > 1 << 20, "Снимок меньше одного куска");
+
+        FileBackedTaskManager reloaded = FileBackedTaskManager.loadFromFile(taskManager.getAutoSave());
+
+        Assertions.assertEquals(taskManager.getTasksList().toString(), reloaded.getTasksList().toString(),
+                "Задачи на границах кусков загружены неверно");
+    }
+
+    @Test
+    public void csvCodecQuotesSpecialCharacters() throws IOException {
+        Task quoted = new Task("Купить: хлеб, \"молоко\"", "Строка 1\nСтрока 2\\конец", TaskStatus.IN_PROGRESS,
+                LocalDateTime.of(2025, 5, 6, 7, 8, 9), 75);
+        taskManager.addTask(quoted);
+        taskManager.addEpic(epic1);
+        SubTask subTask = new SubTask("Подзадача", "с, запятой", TaskStatus.DONE, LocalDateTime.of(2025, 5, 7, 0, 0), 90);
+        taskManager.addSubTask(subTask, epic1.getId());
+
+        Assertions.assertEquals(4, Files.readAllLines(taskManager.getAutoSave().toPath()).size(),
+                "Запись заняла больше одной строки");
+        FileBackedTaskManager reloaded = FileBackedTaskManager.loadFromFile(taskManager.getAutoSave());
+        Task loaded = reloaded.getTask(quoted.getId()).orElseThrow();
+        Assertions.assertEquals(quoted.getTaskName(), loaded.getTaskName());
+        Assertions.assertEquals(quoted.getTaskDescription(), loaded.getTaskDescription());
+        Assertions.assertEquals(quoted.getTaskStartTime(), loaded.getTaskStartTime());
+        Assertions.assertEquals(subTask.getTaskDescription(),
+                reloaded.getSubTask(subTask.getId()).orElseThrow().getTaskDescription());
+        Assertions.assertEquals(subTask.getTaskDuration(),
+                reloaded.getSubTask(subTask.getId()).orElseThrow().getTaskDuration());
+
+        SubTask plain = new SubTask("Подзадача", "Описание", TaskStatus.NEW, LocalDateTime.of(2025, 5, 7, 0, 0), 90);
+        plain.setEpicId(epic1.getId());
+        Assertions.assertEquals(plain.toString(), FileBackedTaskManager.taskToString(plain),
+                "Запись без спецсимволов отличается от toString");
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> FileBackedTaskManager.taskFromString("1,TASK,\"незакрытая,NEW,описание,2025-01-01T00:00,0"));
+    }
+
+    @Test
+    public void writeBehindCoalescesBurstUntilFlush() throws IOException {
+        File file = taskManager.getAutoSave();
+        FileBackedTaskManager writeBehind = FileBackedTaskManager.loadFromFile(file, SaveMode.WRITE_BEHIND);
+        writeBehind.setWriteBehindLimits(TimeUnit.MINUTES.toMillis(1), 1000);
+        for (int i = 0; i < 100; i++) {
+            writeBehind.addTask(new Task("Задача " + i, "Описание", TaskStatus.NEW));
+        }
+        Assertions.assertEquals(0, file.length(), "Снимок перезаписан до отложенной записи");
+
+        writeBehind.flush();
+
+        Assertions.assertEquals(101, Files.readAllLines(file.toPath()).size(), "Серия изменений не сохранена");
+        Assertions.assertEquals(writeBehind.getTasksList().toString(),
+                FileBackedTaskManager.loadFromFile(file).getTasksList().toString());
+        writeBehind.close();
+    }
+
+    @Test
+    public void writeBehindSavesAfterMaxChangesAndOnClose() throws Exception {
+        File file = taskManager.getAutoSave();
+        FileBackedTaskManager writeBehind = FileBackedTaskManager.loadFromFile(file, SaveMode.WRITE_BEHIND);
+        writeBehind.setWriteBehindLimits(TimeUnit.MINUTES.toMillis(1), 3);
+        writeBehind.addTask(task1);
+        writeBehind.addEpic(epic1);
+        writeBehind.addSubTask(subTask1Epic1, epic1.getId());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (file.length() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(4, Files.readAllLines(file.toPath()).size(), "Снимок не записан после лимита изменений");
+
+        writeBehind.removeTask(task1.getId());
+        writeBehind.close();
+
+        FileBackedTaskManager reloaded = FileBackedTaskManager.loadFromFile(file);
+        Assertions.assertTrue(reloaded.getTasksList().isEmpty(), "Изменение перед закрытием потеряно");
+        Assertions.assertEquals(List.of(subTask1Epic1.getId()),
+                reloaded.getEpic(epic1.getId()).orElseThrow().getSubTasksIds());
+    }
+
+    @Test
+    public void writeBehindWaitsBeforeRetryingFailedWrite() throws IOException {
+        File file = taskManager.getAutoSave();
+        FileBackedTaskManager writeBehind = FileBackedTaskManager.loadFromFile(file, SaveMode.WRITE_BEHIND);
+        writeBehind.setWriteBehindLimits(TimeUnit.MINUTES.toMillis(1), 3);
+        Path blocked = Files.createDirectory(Path.of(file.getPath() + ".tmp")); // временный файл снимка не создать
+        writeBehind.addTask(task1);
+        Assertions.assertThrows(ManagerSaveException.class, writeBehind::flush, "Ошибка записи не передана в flush");
+
+        Files.delete(blocked);
+        writeBehind.addTask(task2);
+        writeBehind.addEpic(epic1);
+        writeBehind.addSubTask(subTask1Epic1, epic1.getId());
+        // повтор ждет паузу, не меньшую задержки записи: ни лимит изменений, ни flush не запускают его раньше
+        Assertions.assertThrows(ManagerSaveException.class, writeBehind::flush, "Запись повторена без паузы");
+        Assertions.assertEquals(0, file.length(), "Запись повторена без паузы");
+
+        writeBehind.close(); // закрытие не ждет паузы и повторяет запись сразу
+
+        FileBackedTaskManager reloaded = FileBackedTaskManager.loadFromFile(file);
+        Assertions.assertEquals(List.of(task1, task2), reloaded.getTasksList(), "Запись не повторена после ошибки");
+        Assertions.assertEquals(List.of(subTask1Epic1.getId()),
+                reloaded.getEpic(epic1.getId()).orElseThrow().getSubTasksIds());
+    }
+
+    @Test
+    public void slottedFileKeepsChangesAcrossReload() throws IOException {
+        File file = new File(taskManager.getAutoSave().getParentFile(), "tasks.slots");
+        Files.createFile(file.toPath());
+        FileBackedTaskManager slotted = FileBackedTaskManager.loadFromFile(file);
+        slotted.addTask(task1);
+        slotted.addTask(task2);
+        slotted.addEpic(epic1);
+        slotted.addSubTask(subTask1Epic1, epic1.getId());
+        slotted.updateTask(new Task("Новое название", "Новое описание", TaskStatus.DONE), task1.getId());
+        slotted.removeTask(task2.getId());
+        slotted.close();
+
+        FileBackedTaskManager reloaded = FileBackedTaskManager.loadFromFile(file);
+
+        Assertions.assertEquals(slotted.getTasksList().toString(), reloaded.getTasksList().toString());
+        Assertions.assertEquals(slotted.getEpicsList().toString(), reloaded.getEpicsList().toString());
+        Assertions.assertEquals(slotted.getSubTasksList().toString(), reloaded.getSubTasksList().toString());
+        Assertions.assertThrows(ManagerSaveException.class,
+                () -> FileBackedTaskManager.loadFromFile(file, SaveMode.JOURNAL));
+        reloaded.close();
+    }
+
+    @Test
+    public void slottedFileWritesOnlyChangedRecords() throws IOException {
+        File file = new File(taskManager.getAutoSave().getParentFile(), "tasks.slots");
+        Files.createFile(file.toPath());
+        FileBackedTaskManager slotted = FileBackedTaskManager.loadFromFile(file);
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            tasks.add(new Task("Задача " + i, "Описание", TaskStatus.NEW));
+        }
+        slotted.addTasks(tasks);
+        long size = file.length();
+        byte[] before = Files.readAllBytes(file.toPath());
+
+        Task changed = tasks.get(500);
+        slotted.updateTask(new Task("Задача 500", "Описание", TaskStatus.IN_PROGRESS), changed.getId());
+        slotted.updateTask(new Task("Задача 500", "Описание", TaskStatus.DONE), changed.getId());
+
+        byte[] after = Files.readAllBytes(file.toPath());
+        int changedBytes = Math.abs(after.length - before.length);
+        for (int i = 0; i < Math.min(before.length, after.length); i++) {
+            if (before[i] != after[i]) {
+                changedBytes++;
+            }
+        }
+        Assertions.assertTrue(file.length() <= size + 128, "Освобожденный слот не переиспользован");
+        Assertions.assertTrue(changedBytes < 200, "Переписано больше измененной записи: " + changedBytes);
+        slotted.close();
+        Assertions.assertEquals(TaskStatus.DONE, FileBackedTaskManager.loadFromFile(file)
+                .getTask(changed.getId()).orElseThrow().getTaskStatus());
+    }
+
+    @Test
+    public void slottedFileWithWriteBehindSavesOnFlush() throws IOException {
+        File file = new File(taskManager.getAutoSave().getParentFile(), "tasks.slots");
+        Files.createFile(file.toPath());
+        FileBackedTaskManager writeBehind = FileBackedTaskManager.loadFromFile(file, SaveMode.WRITE_BEHIND);
+        writeBehind.setWriteBehindLimits(TimeUnit.MINUTES.toMillis(1), 1000);
+        writeBehind.addTask(task1);
+        writeBehind.addEpic(epic1);
+        writeBehind.addSubTask(subTask1Epic1, epic1.getId());
+        writeBehind.removeTask(task1.getId());
+
+        writeBehind.flush();
+
+        FileBackedTaskManager reloaded = FileBackedTaskManager.loadFromFile(file);
+        Assertions.assertTrue(reloaded.getTasksList().isEmpty(), "Удаление не сохранено");
+        Assertions.assertEquals(List.of(subTask1Epic1.getId()),
+                reloaded.getEpic(epic1.getId()).orElseThrow().getSubTasksIds());
+        reloaded.close();
+        writeBehind.close();
+    }
+}
@@ -67,6 +67,32 @@ public class HistoryManagerTest {
 
         Assertions.assertFalse(historyManager.getHistory().contains(task), "Задача не удалена");
     }
-}
 
+    @Test
+    public void oldestViewIsEvictedWhenFull() {
+        HistoryManager boundedHistory = new InMemoryHistoryManager(2);
+        boundedHistory.addToHistory(task);
+        boundedHistory.addToHistory(epic);
+        boundedHistory.addToHistory(task);
+        boundedHistory.addToHistory(subTask);
+
+        Assertions.assertEquals(List.of(task, subTask), boundedHistory.getHistory(), "Вытеснена не самая старая задача");
+
+        boundedHistory.remove(task.getId());
+        boundedHistory.addToHistory(epic);
+        Assertions.assertEquals(List.of(subTask, epic), boundedHistory.getHistory());
+    }
 
+    @Test
+    public void historySnapshotIsCachedUntilChange() {
+        historyManager.addToHistory(task);
+        List<Task> history = historyManager.getHistory();
+
+        Assertions.assertSame(history, historyManager.getHistory(), "История пересобрана без изменений");
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> history.add(epic));
+
+        historyManager.addToHistory(epic);
+        Assertions.assertEquals(List.of(task), history, "Выданный снимок изменился");
+        Assertions.assertEquals(List.of(task, epic), historyManager.getHistory());
+    }
+}
@@ -91,6 +91,14 @@ public class HttpTaskManagerTasksTest {
         return client.send(request, HttpResponse.BodyHandlers.ofString());
     }
 
+    private HttpResponse<String> delete(String json, URI uri) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(uri)
+                .method("DELETE", HttpRequest.BodyPublishers.ofString(json))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
     private int addEpicAndGetItsID() throws IOException, InterruptedException {
         String epicToJson = gson.toJson(epic);
         HttpResponse<String> responseAddEpic = post(epicToJson, URI.create("http://localhost:8080/epics"));
@@ -202,6 +210,114 @@ public class HttpTaskManagerTasksTest {
         assertTrue(manager.getTasksList().isEmpty(), "Список задач не пуст");
     }
 
+    @Test
+    public void testBatchTasks() throws IOException, InterruptedException {
+        HttpResponse<String> addResponse = post(gson.toJson(List.of(task, task2)),
+                URI.create("http://localhost:8080/tasks/batch"));
+        assertEquals(201, addResponse.statusCode());
+        List<Task> tasksFromManager = manager.getTasksList();
+        assertEquals(2, tasksFromManager.size(), "Некорректное количество задач");
+
+        Task updated = new Task(tasksFromManager.getFirst());
+        updated.setTaskStatus(TaskStatus.DONE);
+        HttpResponse<String> updateResponse = post(gson.toJson(List.of(updated)),
+                URI.create("http://localhost:8080/tasks/batch/update"));
+        assertEquals(201, updateResponse.statusCode());
+        assertEquals(TaskStatus.DONE, manager.getTask(updated.getId()).orElseThrow().getTaskStatus());
+
+        List<Integer> ids = tasksFromManager.stream().map(Task::getId).toList();
+        HttpResponse<String> deleteResponse = delete(gson.toJson(ids), URI.create("http://localhost:8080/tasks/batch"));
+        assertEquals(200, deleteResponse.statusCode());
+        assertTrue(manager.getTasksList().isEmpty(), "Задачи не удалены");
+    }
+
+    @Test
+    public void testBatchWithOverlapIsRejected() throws IOException, InterruptedException {
+        task2.setTaskStartTime(task.getTaskStartTime());
+        HttpResponse<String> response = post(gson.toJson(List.of(task, task2)),
+                URI.create("http://localhost:8080/tasks/batch"));
+        assertEquals(406, response.statusCode());
+        assertTrue(manager.getTasksList().isEmpty(), "Часть пакета добавлена");
+    }
+
+    @Test
+    public void testGetTaskPages() throws IOException, InterruptedException {
+        Task task3 = new Task("Task3_Name", "Task3_Description", TaskStatus.NEW,
+                LocalDateTime.of(2025, 8, 10, 9, 0), 30);
+        manager.addTasks(List.of(task, task2, task3));
+        Type listType = new TypeToken<List<Task>>() {
+        }.getType();
+
+        HttpResponse<String> firstPage = get(URI.create("http://localhost:8080/tasks?limit=2"));
+        assertEquals(200, firstPage.statusCode());
+        List<Task> firstTasks = gson.fromJson(firstPage.body(), listType);
+        assertEquals(List.of(task, task2), firstTasks, "Страница не по возрастанию id");
+        String next = firstPage.headers().firstValue("Link").orElseThrow();
+        assertEquals("</tasks?limit=2&after=" + task2.getId() + ">; rel=\"next\"", next);
+
+        HttpResponse<String> lastPage = get(URI.create("http://localhost:8080/tasks?limit=2&after=" + task2.getId()));
+        assertEquals(List.of(task3), gson.fromJson(lastPage.body(), listType));
+        assertTrue(lastPage.headers().firstValue("Link").isEmpty(), "Ссылка на пустую страницу");
+
+        HttpResponse<String> byStart = get(URI.create("http://localhost:8080/tasks?order=start&limit=1"
+                + "&afterStart=" + task3.getTaskStartTime() + "&after=" + task3.getId()));
+        List<Task> byStartTasks = gson.fromJson(byStart.body(), listType);
+        assertEquals(List.of(task), byStartTasks, "Курсор по времени начала не учтен");
+    }
+
+    @Test
+    public void testFindTasksByStatusAndRange() throws IOException, InterruptedException {
+        task2.setTaskStatus(TaskStatus.DONE);
+        manager.addTasks(List.of(task, task2));
+        Type listType = new TypeToken<List<Task>>() {
+        }.getType();
+
+        HttpResponse<String> byStatus = get(URI.create("http://localhost:8080/tasks?status=DONE"));
+        assertEquals(200, byStatus.statusCode());
+        assertEquals(List.of(task2), gson.fromJson(byStatus.body(), listType));
+
+        HttpResponse<String> inRange = get(URI.create("http://localhost:8080/tasks?from=2025-08-10T14:00:00"
+                + "&to=2025-08-10T15:00:00"));
+        assertEquals(List.of(task), gson.fromJson(inRange.body(), listType));
+
+        HttpResponse<String> wrongStatus = get(URI.create("http://localhost:8080/tasks?status=UNKNOWN"));
+        assertEquals(404, wrongStatus.statusCode());
+    }
+
+    @Test
+    public void testFilteredTaskPagesUseLimitAndCursor() throws IOException, InterruptedException {
+        Task task3 = new Task("Task3_Name", "Task3_Description", TaskStatus.DONE,
+                LocalDateTime.of(2025, 8, 10, 9, 0), 30);
+        task2.setTaskStatus(TaskStatus.DONE);
+        manager.addTasks(List.of(task, task2, task3));
+        manager.addEpic(epic);
+        manager.addSubTask(subTask, epic.getId());
+        Type listType = new TypeToken<List<Task>>() {
+        }.getType();
+
+        HttpResponse<String> firstDone = get(URI.create("http://localhost:8080/tasks?status=DONE&limit=1"));
+        assertEquals(List.of(task2), gson.fromJson(firstDone.body(), listType), "limit не применен к фильтру");
+        assertEquals("</tasks?limit=1&after=" + task2.getId() + "&status=DONE>; rel=\"next\"",
+                firstDone.headers().firstValue("Link").orElseThrow());
+        HttpResponse<String> lastDone = get(URI.create("http://localhost:8080/tasks?limit=1&after=" + task2.getId()
+                + "&status=DONE"));
+        assertEquals(List.of(task3), gson.fromJson(lastDone.body(), listType), "Курсор не применен к фильтру");
+        assertTrue(lastDone.headers().firstValue("Link").isEmpty());
+
+        HttpResponse<String> firstInRange = get(URI.create("http://localhost:8080/tasks?from=2025-08-10T00:00:00"
+                + "&to=2025-08-11T00:00:00&limit=2"));
+        assertEquals(List.of(task3, task), gson.fromJson(firstInRange.body(), listType));
+        String next = firstInRange.headers().firstValue("Link").orElseThrow();
+        String nextUri = next.substring(1, next.indexOf('>'));
+        assertEquals(List.of(task2), gson.fromJson(get(URI.create("http://localhost:8080" + nextUri)).body(),
+                listType), "Ссылка на следующую страницу потеряла фильтр или курсор");
+
+        // подзадачи не попадают в расписание задач и не занимают место на странице
+        HttpResponse<String> byStart = get(URI.create("http://localhost:8080/tasks?order=start&limit=3"));
+        assertEquals(List.of(task3, task, task2), gson.fromJson(byStart.body(), listType));
+        assertTrue(byStart.headers().firstValue("Link").isEmpty(), "Подзадача учтена в странице задач");
+    }
+
     @Test
     public void testAddEpic() throws IOException, InterruptedException {
         String epicToJson = gson.toJson(epic);
@@ -471,7 +587,7 @@ public class HttpTaskManagerTasksTest {
         }.getType();
         List<Task> history = gson.fromJson(response.body(), listType2);
 
-        assertEquals(4, history.size(), "Размер списка не соответствует");
+        assertEquals(3, history.size(), "Размер списка не соответствует");
     }
 
     @Test
@@ -493,4 +609,32 @@ public class HttpTaskManagerTasksTest {
         assertEquals(2, prioritizedList.size(), "Размер списка не соответствует");
         assertEquals("Task_Name", prioritizedList.getFirst().getTaskName(), "Нарушена приоритетность");
     }
+
+    @Test
+    public void testGetFreeSlot() throws IOException, InterruptedException {
+        manager.addTasks(List.of(task, task2));
+
+        HttpResponse<String> response = get(URI.create("http://localhost:8080/prioritized/free-slot?duration=120"
+                + "&notBefore=2025-08-10T14:00:00"));
+        assertEquals(200, response.statusCode());
+        assertEquals(LocalDateTime.of(2025, 8, 10, 15, 30), gson.fromJson(response.body(), LocalDateTime.class));
+
+        HttpResponse<String> noDuration = get(URI.create("http://localhost:8080/prioritized/free-slot"));
+        assertEquals(404, noDuration.statusCode());
+    }
+
+    @Test
+    public void testUpdateAndDeleteDoNotChangeHistory() throws IOException, InterruptedException {
+        manager.addTasks(List.of(task, task2));
+
+        Task updated = new Task(task);
+        updated.setTaskStatus(TaskStatus.DONE);
+        HttpResponse<String> updateResponse = post(gson.toJson(updated), URI.create("http://localhost:8080/tasks/"
+                + task.getId()));
+        assertEquals(201, updateResponse.statusCode());
+        HttpResponse<String> deleteResponse = delete(URI.create("http://localhost:8080/tasks/" + task2.getId()));
+        assertEquals(200, deleteResponse.statusCode());
+
+        assertTrue(manager.getHistory().isEmpty(), "Изменение задачи попало в историю просмотров");
+    }
 }
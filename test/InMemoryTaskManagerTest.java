@@ -1,12 +1,16 @@
 import enums.TaskStatus;
+import enums.TaskType;
 import exceptions.OverlapException;
 import managers.InMemoryTaskManager;
+import managers.TaskManager;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import tasks.*;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
@@ -309,6 +313,19 @@ public class InMemoryTaskManagerTest extends TaskManagerTest<InMemoryTaskManager
                 "Была добавлена новая пересекающаяся задача");
     }
 
+    @Test
+    public void cannotReAddScheduledTaskWithId() {
+        task1.setTaskStartTime(LocalDateTime.of(2025, 7, 10, 12, 0));
+        task1.setTaskDuration(60);
+
+        manager.addTask(task1);
+
+        Assertions.assertThrows(OverlapException.class, () -> manager.addTask(task1),
+                "Задача с id добавлена повторно поверх своего интервала");
+        Assertions.assertEquals(1, manager.getPrioritizedTasks().size(), "В расписании появился дубликат");
+        Assertions.assertEquals(1, manager.getTasksList().size());
+    }
+
     @Test
     public void cannotUpdateOverlappingTask() {
         task1.setTaskStartTime(LocalDateTime.of(2025, 7, 10, 12, 0));
@@ -318,11 +335,66 @@ public class InMemoryTaskManagerTest extends TaskManagerTest<InMemoryTaskManager
         task2.setTaskDuration(200);
 
         manager.addTask(task1);
+        manager.addTask(new Task("A", "B", TaskStatus.NEW, LocalDateTime.of(2025, 7, 10, 17, 0), 60));
 
         Assertions.assertThrows(OverlapException.class, () -> manager.updateTask(task2, task1.getId()),
                 "Была обновлена новая пересекающаяся задача");
     }
 
+    @Test
+    public void updateScheduledTaskAndSubTaskInPlace() {
+        LocalDateTime start = LocalDateTime.of(2025, 7, 10, 12, 0);
+        task1.setTaskStartTime(start);
+        task1.setTaskDuration(60);
+        subTask1Epic1.setTaskStartTime(start.plusHours(2));
+        subTask1Epic1.setTaskDuration(60);
+        manager.addTask(task1);
+        manager.addEpic(epic1);
+        manager.addSubTask(subTask1Epic1, epic1.getId());
+
+        Assertions.assertDoesNotThrow(() -> manager.updateTask(
+                new Task("A", "B", TaskStatus.DONE, start, 60), task1.getId()), "Задача пересеклась сама с собой");
+        Assertions.assertDoesNotThrow(() -> manager.updateTask(
+                new Task("A", "B", TaskStatus.DONE, start.plusMinutes(30), 60), task1.getId()));
+        Assertions.assertDoesNotThrow(() -> manager.updateSubTask(new SubTask("C", "D", TaskStatus.DONE,
+                start.plusHours(2), 90), subTask1Epic1.getId()), "Подзадача пересеклась сама с собой");
+
+        Assertions.assertEquals(start.plusMinutes(30), manager.getTask(task1.getId()).orElseThrow().getTaskStartTime());
+        Assertions.assertEquals(90, manager.getSubTask(subTask1Epic1.getId()).orElseThrow().getTaskDuration().toMinutes());
+        Assertions.assertEquals(2, manager.getPrioritizedTasks().size());
+    }
+
+    @Test
+    public void cannotAddTaskInsideScheduledSubTask() {
+        subTask1Epic1.setTaskStartTime(LocalDateTime.of(2025, 7, 10, 12, 0));
+        subTask1Epic1.setTaskDuration(300);
+        task1.setTaskStartTime(LocalDateTime.of(2025, 7, 10, 13, 0));
+        task1.setTaskDuration(60);
+
+        manager.addEpic(epic1);
+        manager.addSubTask(subTask1Epic1, epic1.getId());
+
+        Assertions.assertThrows(OverlapException.class, () -> manager.addTask(task1),
+                "Была добавлена задача внутри интервала подзадачи");
+    }
+
+    @Test
+    public void canAddAdjacentTasksAfterRemoval() {
+        task1.setTaskStartTime(LocalDateTime.of(2025, 7, 10, 12, 0));
+        task1.setTaskDuration(60);
+        task2.setTaskStartTime(LocalDateTime.of(2025, 7, 10, 13, 0));
+        task2.setTaskDuration(60);
+        Task overlapping = new Task("A", "B", TaskStatus.NEW, LocalDateTime.of(2025, 7, 10, 12, 30), 60);
+
+        manager.addTask(task1);
+        manager.addTask(task2);
+        Assertions.assertThrows(OverlapException.class, () -> manager.addTask(overlapping));
+
+        manager.removeTask(task1.getId());
+        manager.removeTask(task2.getId());
+        Assertions.assertDoesNotThrow(() -> manager.addTask(overlapping), "Удаленные задачи остались в индексе");
+    }
+
     @Test
     public void setStartTimeAndDurationForEpics() {
         LocalDateTime startTime1 = LocalDateTime.of(2025, 8, 11, 10, 0);
@@ -348,6 +420,37 @@ public class InMemoryTaskManagerTest extends TaskManagerTest<InMemoryTaskManager
         Assertions.assertEquals(startTime1, epic.get().getTaskStartTime());
     }
 
+    @Test
+    public void epicParametersFollowSubTaskChanges() {
+        LocalDateTime startTime1 = LocalDateTime.of(2025, 8, 11, 10, 0);
+        LocalDateTime startTime2 = LocalDateTime.of(2025, 8, 11, 11, 30);
+        subTask1Epic1.setTaskStartTime(startTime1);
+        subTask1Epic1.setTaskDuration(30);
+        subTask2Epic1.setTaskStartTime(startTime2);
+        subTask2Epic1.setTaskDuration(40);
+
+        manager.addEpic(epic1);
+        manager.addSubTask(subTask1Epic1, epic1.getId());
+        manager.addSubTask(subTask2Epic1, epic1.getId());
+        manager.removeSubTask(subTask2Epic1.getId());
+
+        Optional<Epic> epic = manager.getEpic(epic1.getId());
+        Assertions.assertTrue(epic.isPresent());
+        Assertions.assertEquals(TaskStatus.NEW, epic.get().getTaskStatus(), "Статус не пересчитан после удаления");
+        Assertions.assertEquals(startTime1.plusMinutes(30), epic.get().getEndTime(), "Время окончания не пересчитано");
+
+        manager.updateEpic(epic2, epic1.getId());
+        Optional<Epic> updatedEpic = manager.getEpic(epic1.getId());
+        Assertions.assertTrue(updatedEpic.isPresent());
+        Assertions.assertEquals(List.of(subTask1Epic1.getId()), updatedEpic.get().getSubTasksIds(),
+                "Подзадачи потеряны при обновлении эпика");
+        Assertions.assertEquals(startTime1, updatedEpic.get().getTaskStartTime());
+
+        manager.removeSubTask(subTask1Epic1.getId());
+        Assertions.assertEquals(Task.DEFAULT_TIME, updatedEpic.get().getTaskStartTime(), "Время эпика не сброшено");
+        Assertions.assertEquals(0, updatedEpic.get().getTaskDuration().toMinutes());
+    }
+
     @Test
     public void getPrioritizedTasks() {
         task1.setTaskStartTime(LocalDateTime.of(2025, 7, 10, 12, 0));
@@ -388,4 +491,243 @@ public class InMemoryTaskManagerTest extends TaskManagerTest<InMemoryTaskManager
 
         Assertions.assertEquals(tasksInOrder, prioritizedTasks);
     }
+
+    @Test
+    public void prioritizedTasksKeepTasksWithSameStartTime() {
+        LocalDateTime startTime = LocalDateTime.of(2025, 7, 10, 12, 0);
+        task1.setTaskStartTime(startTime);
+        task2.setTaskStartTime(startTime);
+
+        manager.addTask(task1);
+        manager.addTask(task2);
+
+        List<Task> prioritizedTasks = manager.getPrioritizedTasks();
+        Assertions.assertEquals(2, prioritizedTasks.size(), "Задачи с одинаковым временем начала схлопнулись");
+        Assertions.assertEquals(task1, prioritizedTasks.getFirst(), "Нарушен порядок по id");
+        Assertions.assertSame(prioritizedTasks, manager.getPrioritizedTasks(), "Список пересобран без изменений");
+
+        manager.updateTask(new Task("A", "B", TaskStatus.DONE, startTime.plusHours(1), 30), task1.getId());
+        Assertions.assertEquals(List.of(task2, task1), manager.getPrioritizedTasks(), "Порядок не обновлен");
+    }
+
+    @Test
+    public void updateEpicsChecksOverlapsLikeUpdateEpic() {
+        LocalDateTime startTime = LocalDateTime.of(2025, 7, 10, 12, 0);
+        task1.setTaskStartTime(startTime);
+        task1.setTaskDuration(60);
+        manager.addTask(task1);
+        manager.addEpic(epic1);
+        manager.addEpic(epic2);
+
+        Epic renamed = new Epic("Новое имя", "");
+        renamed.setId(epic1.getId());
+        Epic overlapping = new Epic("Пересечение", "");
+        overlapping.setId(epic2.getId());
+        overlapping.setTaskStartTime(startTime.plusMinutes(30));
+        overlapping.setTaskDuration(60);
+        overlapping.setEndTime(startTime.plusMinutes(90));
+
+        Assertions.assertThrows(OverlapException.class, () -> manager.updateEpic(overlapping, epic2.getId()));
+        Assertions.assertThrows(OverlapException.class, () -> manager.updateEpics(List.of(renamed, overlapping)));
+        Assertions.assertEquals(epic1.getTaskName(), manager.getEpic(epic1.getId()).orElseThrow().getTaskName(),
+                "Часть пакета обновлена");
+    }
+
+    @Test
+    public void managersHaveIndependentIdSequences() {
+        TaskManager otherManager = new InMemoryTaskManager();
+
+        manager.addTask(task1);
+        otherManager.addTask(task2);
+
+        Assertions.assertEquals(task1.getId(), task2.getId(), "Менеджеры используют общий счетчик id");
+    }
+
+    @Test
+    public void batchWithOverlapIsRejectedAsWhole() {
+        LocalDateTime startTime = LocalDateTime.of(2025, 7, 10, 12, 0);
+        task1.setTaskStartTime(startTime);
+        task1.setTaskDuration(60);
+        task2.setTaskStartTime(startTime.plusMinutes(30));
+        task2.setTaskDuration(60);
+
+        Assertions.assertThrows(OverlapException.class, () -> manager.addTasks(List.of(task1, task2)));
+        Assertions.assertTrue(manager.getTasksList().isEmpty(), "Часть пакета добавлена");
+        Assertions.assertTrue(manager.getPrioritizedTasks().isEmpty(), "Часть пакета попала в расписание");
+
+        task2.setTaskStartTime(startTime.plusHours(1));
+        manager.addTasks(List.of(task1, task2));
+        Assertions.assertEquals(List.of(task1, task2), manager.getPrioritizedTasks());
+    }
+
+    @Test
+    public void batchUpdateCanSwapScheduledTasks() {
+        LocalDateTime startTime = LocalDateTime.of(2025, 7, 10, 12, 0);
+        task1.setTaskStartTime(startTime);
+        task1.setTaskDuration(60);
+        task2.setTaskStartTime(startTime.plusHours(1));
+        task2.setTaskDuration(60);
+        manager.addTasks(List.of(task1, task2));
+
+        Task newTask1 = new Task(task1);
+        newTask1.setTaskStartTime(task2.getTaskStartTime());
+        Task newTask2 = new Task(task2);
+        newTask2.setTaskStartTime(task1.getTaskStartTime());
+        manager.updateTasks(List.of(newTask1, newTask2));
+
+        Assertions.assertEquals(List.of(newTask2, newTask1), manager.getPrioritizedTasks(), "Задачи не поменялись местами");
+    }
+
+    @Test
+    public void batchUpdateKeepsLastVersionOfDuplicateId() {
+        LocalDateTime startTime = LocalDateTime.of(2025, 7, 10, 12, 0);
+        task1.setTaskStartTime(startTime);
+        task1.setTaskDuration(60);
+        subTask1Epic1.setTaskStartTime(startTime.plusDays(1));
+        subTask1Epic1.setTaskDuration(60);
+        manager.addTask(task1);
+        manager.addEpic(epic1);
+        manager.addSubTask(subTask1Epic1, epic1.getId());
+
+        Task first = new Task(task1);
+        first.setTaskStartTime(startTime.plusHours(2));
+        Task last = new Task(task1);
+        last.setTaskStartTime(startTime.plusHours(4));
+        manager.updateTasks(List.of(first, last));
+        SubTask firstSubTask = new SubTask(subTask1Epic1);
+        firstSubTask.setTaskStartTime(startTime.plusDays(2));
+        SubTask lastSubTask = new SubTask(subTask1Epic1);
+        lastSubTask.setTaskStatus(TaskStatus.DONE);
+        manager.updateSubTasks(List.of(firstSubTask, lastSubTask));
+
+        Assertions.assertEquals(List.of(last, lastSubTask), manager.getPrioritizedTasks(), "В расписании осталась копия");
+        Assertions.assertEquals(TaskStatus.DONE, manager.getEpic(epic1.getId()).orElseThrow().getTaskStatus());
+        manager.removeTask(task1.getId());
+        manager.removeSubTask(subTask1Epic1.getId());
+        Assertions.assertTrue(manager.getPrioritizedTasks().isEmpty(), "Удаленная задача осталась в расписании");
+        Assertions.assertDoesNotThrow(() -> manager.addTask(new Task("A", "B", TaskStatus.NEW, startTime.plusHours(2), 60)));
+    }
+
+    @Test
+    public void batchSubTasksUpdateEpicAndBatchRemoveClearsIt() {
+        manager.addEpics(List.of(epic1));
+        subTask1Epic1.setEpicId(epic1.getId());
+        subTask2Epic1.setEpicId(epic1.getId());
+        subTask2Epic1.setTaskStatus(TaskStatus.DONE);
+        manager.addSubTasks(List.of(subTask1Epic1, subTask2Epic1));
+
+        Epic epic = manager.getEpic(epic1.getId()).orElseThrow();
+        Assertions.assertEquals(List.of(subTask1Epic1.getId(), subTask2Epic1.getId()), epic.getSubTasksIds());
+        Assertions.assertEquals(TaskStatus.IN_PROGRESS, epic.getTaskStatus(), "Статус эпика не пересчитан");
+
+        manager.removeSubTasks(List.of(subTask1Epic1.getId(), subTask2Epic1.getId()));
+        Assertions.assertTrue(manager.getSubTasksList().isEmpty());
+        Assertions.assertTrue(manager.getEpic(epic1.getId()).orElseThrow().getSubTasksIds().isEmpty());
+    }
+
+    @Test
+    public void iteratorsWalkFromCursorInOrder() {
+        task1.setTaskStartTime(LocalDateTime.of(2025, 7, 10, 14, 0));
+        task2.setTaskStartTime(LocalDateTime.of(2025, 7, 10, 12, 0));
+        Task task3 = new Task("task3name", "task3description", TaskStatus.NEW);
+        manager.addTask(task1);
+        manager.addTask(task2);
+        manager.addTask(task3);
+        manager.removeTask(task2.getId());
+        manager.addTask(task2);
+
+        List<Task> afterFirst = new ArrayList<>();
+        manager.tasksAfter(task1.getId()).forEachRemaining(afterFirst::add);
+        Assertions.assertEquals(List.of(task3, task2), afterFirst, "Нарушен порядок id после курсора");
+
+        Iterator<Task> prioritized = manager.prioritizedAfter(task2.getTaskStartTime(), task2.getId());
+        Assertions.assertEquals(task1, prioritized.next(), "Курсор расписания не учтен");
+        Assertions.assertFalse(prioritized.hasNext());
+        Assertions.assertEquals(task2, manager.prioritizedAfter(null, 0).next());
+    }
+
+    @Test
+    public void findByStatusAndRangeFollowChanges() {
+        LocalDateTime startTime = LocalDateTime.of(2025, 8, 11, 10, 0);
+        subTask1Epic1.setTaskStartTime(startTime);
+        subTask1Epic1.setTaskDuration(30);
+        subTask2Epic1.setTaskStartTime(startTime.plusDays(7));
+        manager.addEpic(epic1);
+        manager.addSubTask(subTask1Epic1, epic1.getId());
+        manager.addSubTask(subTask2Epic1, epic1.getId());
+        manager.addTask(task1);
+
+        Assertions.assertEquals(List.of(subTask2Epic1), manager.findByStatus(TaskType.SUBTASK, TaskStatus.IN_PROGRESS));
+        Assertions.assertEquals(List.of(epic1), manager.findByStatus(TaskType.EPIC, TaskStatus.IN_PROGRESS),
+                "Статус эпика не переиндексирован");
+        Assertions.assertEquals(List.of(subTask1Epic1),
+                manager.findInRange(TaskType.SUBTASK, startTime, startTime.plusDays(7)));
+        Assertions.assertEquals(List.of(epic1), manager.findInRange(TaskType.EPIC, startTime, startTime.plusDays(1)));
+        Assertions.assertTrue(manager.findInRange(TaskType.TASK, LocalDateTime.MIN, LocalDateTime.MAX).isEmpty(),
+                "Незапланированная задача попала в выборку по времени");
+
+        manager.removeSubTask(subTask2Epic1.getId());
+        Assertions.assertTrue(manager.findByStatus(TaskType.SUBTASK, TaskStatus.IN_PROGRESS).isEmpty());
+        Assertions.assertEquals(List.of(epic1), manager.findByStatus(TaskType.EPIC, TaskStatus.NEW));
+        Assertions.assertEquals(List.of(task1), manager.findByStatus(TaskType.TASK, TaskStatus.NEW));
+    }
+
+    @Test
+    public void findByStatusAndRangePagesFollowCursor() {
+        LocalDateTime startTime = LocalDateTime.of(2025, 8, 11, 10, 0);
+        task1.setTaskStartTime(startTime.plusHours(2));
+        task2.setTaskStartTime(startTime);
+        task2.setTaskStatus(TaskStatus.DONE);
+        Task task3 = new Task("Task3_Name", "Task3_Description", TaskStatus.NEW, startTime.plusHours(1), 30);
+        manager.addTasks(List.of(task1, task2, task3));
+
+        Assertions.assertEquals(List.of(task1), manager.findByStatus(TaskType.TASK, TaskStatus.NEW, 0, 1));
+        Assertions.assertEquals(List.of(task3), manager.findByStatus(TaskType.TASK, TaskStatus.NEW, task1.getId(), 5));
+
+        Assertions.assertEquals(List.of(task2, task3), manager.findInRange(TaskType.TASK, null, LocalDateTime.MIN,
+                LocalDateTime.MAX, null, 0, 2));
+        Assertions.assertEquals(List.of(task1), manager.findInRange(TaskType.TASK, null, LocalDateTime.MIN,
+                LocalDateTime.MAX, task3.getTaskStartTime(), task3.getId(), 2), "Курсор по времени не учтен");
+        Assertions.assertEquals(List.of(task3, task1), manager.findInRange(TaskType.TASK, TaskStatus.NEW,
+                startTime, startTime.plusDays(1), null, 0, 5), "Фильтр по статусу не применен к диапазону");
+        Assertions.assertTrue(manager.findInRange(TaskType.TASK, null, startTime, startTime.plusDays(1),
+                startTime.plusDays(2), 0, 5).isEmpty(), "Курсор за границей диапазона");
+    }
+
+    @Test
+    public void findFreeSlotSkipsBusyIntervals() {
+        LocalDateTime startTime = LocalDateTime.of(2025, 7, 10, 12, 0);
+        task1.setTaskStartTime(startTime);
+        task1.setTaskDuration(60);
+        task2.setTaskStartTime(startTime.plusMinutes(90));
+        task2.setTaskDuration(30);
+        manager.addTasks(List.of(task1, task2));
+
+        Assertions.assertEquals(startTime.plusMinutes(60), manager.findFreeSlot(Duration.ofMinutes(30),
+                startTime.plusMinutes(10)), "Не учтена задача, накрывающая notBefore");
+        Assertions.assertEquals(startTime.plusMinutes(120), manager.findFreeSlot(Duration.ofMinutes(45),
+                startTime), "Промежуток меньше длительности");
+        Assertions.assertEquals(startTime.minusHours(1), manager.findFreeSlot(Duration.ofMinutes(60),
+                startTime.minusHours(1)));
+
+        Task found = new Task("task3name", "task3description", TaskStatus.NEW,
+                manager.findFreeSlot(Duration.ofMinutes(30), startTime), 30);
+        Assertions.assertDoesNotThrow(() -> manager.addTask(found), "Найденный промежуток занят");
+    }
+
+    @Test
+    public void internalReadsDoNotChangeHistory() {
+        manager.addTask(task1);
+        manager.addEpic(epic1);
+        manager.addSubTask(subTask1Epic1, epic1.getId());
+        manager.addSubTask(subTask2Epic1, epic1.getId());
+
+        Assertions.assertTrue(manager.peekTask(task1.getId()).isPresent());
+        Assertions.assertTrue(manager.peekSubTask(subTask1Epic1.getId()).isPresent());
+        Assertions.assertEquals(List.of(subTask1Epic1, subTask2Epic1), manager.getSubTasksListByEpic(epic1.getId()));
+        Assertions.assertTrue(manager.getHistory().isEmpty(), "Чтение без просмотра попало в историю");
+
+        manager.getEpic(epic1.getId());
+        Assertions.assertEquals(List.of(epic1), manager.getHistory());
+    }
 }
@@ -0,0 +1,91 @@
+import enums.TaskStatus;
+import managers.SortedIntObjectMap;
+import tasks.Task;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+// Память и время поиска SortedIntObjectMap<Task>, в котором менеджер и хранилища держат задачи, против
+// HashMap<Integer, Task> на одних и тех же id:
+// подряд (1, 2, 3...), чередованием блоков (id блоков IdGenerator, выданных разным потокам) и с шагом
+// степени двойки. Поиск идет в случайном порядке, чтобы мерить пробирование, а не предвыборку памяти.
+// Все значения - одна задача, поэтому в память входит только сама таблица (с массивом ключей для обхода
+// по id, уже упорядоченным: перед замером карта обходится один раз).
+// Память меряется после System.gc(), точнее всего с -XX:+UseSerialGC.
+// Запуск: java -XX:+UseSerialGC IntObjectMapBenchmark [число записей]
+public class IntObjectMapBenchmark {
+    private static final int BLOCKS = 64;
+    private static final int STRIDE = 1024;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Task task = new Task("Задача", "Описание", TaskStatus.NEW);
+        int[][] patterns = new int[3][count];
+        for (int i = 0; i < count; i++) {
+            patterns[0][i] = i + 1;
+            patterns[1][i] = (i % BLOCKS) * count + i / BLOCKS + 1; // BLOCKS блоков, заполняемых по очереди
+            patterns[2][i] = (i + 1) * STRIDE;
+        }
+        String[] names = {"подряд", "блоки", "шаг " + STRIDE};
+        Random random = new Random(42);
+        for (int pattern = 0; pattern < patterns.length; pattern++) {
+            int[] ids = patterns[pattern];
+            int[] lookups = ids.clone();
+            for (int i = lookups.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int id = lookups[i];
+                lookups[i] = lookups[j];
+                lookups[j] = id;
+            }
+            String name = names[pattern];
+
+            long before = usedMemory();
+            Map<Integer, Task> hashMap = new HashMap<>();
+            for (int id : ids) {
+                hashMap.put(id, task);
+            }
+            long hashMapBytes = usedMemory() - before;
+
+            before = usedMemory();
+            SortedIntObjectMap<Task> intMap = new SortedIntObjectMap<>();
+            for (int id : ids) {
+                intMap.put(id, task);
+            }
+            intMap.valuesAfter(0);
+            long intMapBytes = usedMemory() - before;
+
+            long hashMapNanos = Long.MAX_VALUE;
+            long intMapNanos = Long.MAX_VALUE;
+            long sink = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                for (int id : lookups) {
+                    sink += hashMap.get(id) == task ? 1 : 0;
+                }
+                hashMapNanos = Math.min(hashMapNanos, System.nanoTime() - start);
+                start = System.nanoTime();
+                for (int id : lookups) {
+                    sink += intMap.get(id) == task ? 1 : 0;
+                }
+                intMapNanos = Math.min(intMapNanos, System.nanoTime() - start);
+            }
+            System.out.printf("%-8s HashMap %6.1f МБ (%5.1f Б/запись), поиск %5.1f нс; "
+                            + "SortedIntObjectMap %6.1f МБ (%5.1f Б/запись), поиск %5.1f нс (%d)%n", name,
+                    hashMapBytes / 1e6, (double) hashMapBytes / count, (double) hashMapNanos / count,
+                    intMapBytes / 1e6, (double) intMapBytes / count, (double) intMapNanos / count, sink);
+            if (hashMap.size() != intMap.size()) {
+                throw new IllegalStateException("Размеры таблиц не совпадают");
+            }
+        }
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,113 @@
+import managers.IntObjectMap;
+import managers.SortedIntObjectMap;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+public class IntObjectMapTest {
+
+    private IntObjectMap<String> map;
+
+    @BeforeEach
+    public void setDefaultValues() {
+        map = new IntObjectMap<>();
+    }
+
+    @Test
+    public void putGetAndReplaceValues() {
+        Assertions.assertNull(map.put(1, "a"));
+        Assertions.assertNull(map.put(2, "b"));
+        Assertions.assertEquals("a", map.put(1, "c"), "Не возвращено прежнее значение");
+
+        Assertions.assertEquals("c", map.get(1));
+        Assertions.assertEquals("b", map.get(2));
+        Assertions.assertNull(map.get(3));
+        Assertions.assertEquals(2, map.size());
+    }
+
+    @Test
+    public void removeKeepsCollidingKeysReachable() {
+        // ключи с шагом 1024 попадают в одну цепочку пробирования
+        for (int i = 0; i < 100; i++) {
+            map.put(i * 1024, "value" + i);
+        }
+        for (int i = 0; i < 100; i += 2) {
+            Assertions.assertEquals("value" + i, map.remove(i * 1024));
+        }
+        for (int i = 0; i < 100; i++) {
+            Assertions.assertEquals(i % 2 == 0 ? null : "value" + i, map.get(i * 1024), "Потерян ключ " + i * 1024);
+        }
+        Assertions.assertEquals(50, map.size());
+    }
+
+    @Test
+    public void valuesViewContainsAllValuesAfterResize() {
+        Set<String> expected = new HashSet<>();
+        for (int i = 1; i <= 1000; i++) {
+            map.put(i, "value" + i);
+            expected.add("value" + i);
+        }
+
+        Assertions.assertEquals(expected, new HashSet<>(map.values()));
+        map.clear();
+        Assertions.assertTrue(map.isEmpty());
+        Assertions.assertFalse(map.containsKey(1));
+    }
+
+    @Test
+    public void sortedMapKeepsIdOrderForOutOfOrderInsertsAndRemoves() {
+        SortedIntObjectMap<String> sorted = new SortedIntObjectMap<>();
+        // id из блоков разных потоков приходят не по порядку
+        for (int block = 3; block >= 0; block--) {
+            for (int i = 1; i <= 64; i++) {
+                sorted.put(block * 64 + i, "value" + (block * 64 + i));
+            }
+        }
+        for (int id = 2; id <= 256; id += 2) {
+            sorted.remove(id);
+        }
+        sorted.put(7, "replaced");
+
+        List<String> expected = new ArrayList<>();
+        for (int id = 1; id <= 256; id += 2) {
+            expected.add(id == 7 ? "replaced" : "value" + id);
+        }
+        Assertions.assertEquals(expected, new ArrayList<>(sorted.values()));
+        Assertions.assertEquals(128, sorted.values().size());
+
+        Iterator<String> page = sorted.valuesAfter(100);
+        Assertions.assertEquals("value101", page.next(), "Страница после курсора начинается не с того id");
+        Assertions.assertEquals("value103", page.next());
+        Assertions.assertFalse(sorted.valuesAfter(255).hasNext());
+    }
+
+    @Test
+    public void sortedMapIteratorSkipsKeysRemovedAfterItsCreation() {
+        SortedIntObjectMap<String> sorted = new SortedIntObjectMap<>();
+        for (int id = 1; id <= 10; id++) {
+            sorted.put(id, "value" + id);
+        }
+        Iterator<String> values = sorted.valuesAfter(0);
+        Assertions.assertEquals("value1", values.next());
+
+        sorted.remove(2);
+        sorted.put(3, "replaced");
+        sorted.put(0, "value0");
+        for (int id = 11; id <= 40; id++) {
+            sorted.put(id, "value" + id); // массив ключей перестраивается при заполнении
+        }
+        Assertions.assertEquals("replaced", values.next(), "Удаленный ключ не пропущен");
+
+        List<String> rest = new ArrayList<>();
+        values.forEachRemaining(rest::add);
+        Assertions.assertEquals(7, rest.size(), "Итератор вышел за ключи на момент создания");
+        Assertions.assertEquals("value0", sorted.values().iterator().next());
+        Assertions.assertEquals(40, sorted.values().size());
+    }
+}
@@ -0,0 +1,66 @@
+import enums.SaveMode;
+import enums.SyncMode;
+import enums.TaskStatus;
+import managers.FileBackedTaskManager;
+import tasks.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+// Пропускная способность журнала FileBackedTaskManager в разных режимах сброса на диск.
+// Запуск: java JournalSyncBenchmark [операций на поток]; печатает операций в секунду для 1 и 8 писателей
+public class JournalSyncBenchmark {
+    private static final int[] WRITERS = {1, 8};
+
+    public static void main(String[] args) throws Exception {
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        for (SyncMode syncMode : SyncMode.values()) {
+            for (int writers : WRITERS) {
+                double opsPerSecond = run(syncMode, writers, operations);
+                System.out.printf("%-12s writers=%d  %,12.0f ops/s%n", syncMode, writers, opsPerSecond);
+            }
+        }
+    }
+
+    private static double run(SyncMode syncMode, int writers, int operations) throws Exception {
+        Path dir = Files.createTempDirectory("journal-benchmark");
+        File file = Files.createFile(dir.resolve("tasks.csv")).toFile();
+        FileBackedTaskManager manager = FileBackedTaskManager.loadFromFile(file, SaveMode.JOURNAL, syncMode);
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            futures.add(executor.submit(() -> {
+                startSignal.await();
+                for (int i = 0; i < operations; i++) {
+                    manager.addTask(new Task("Задача", "Описание задачи", TaskStatus.NEW));
+                }
+                return null;
+            }));
+        }
+        long start = System.nanoTime();
+        startSignal.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        manager.close();
+        deleteAll(dir);
+        return (double) writers * operations * TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    private static void deleteAll(Path dir) throws IOException {
+        try (var files = Files.list(dir)) {
+            for (Path path : files.toList()) {
+                Files.delete(path);
+            }
+        }
+        Files.delete(dir);
+    }
+}
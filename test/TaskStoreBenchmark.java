@@ -0,0 +1,64 @@
+import enums.TaskStatus;
+import managers.*;
+import tasks.Task;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+// Одна и та же нагрузка на каждое хранилище TaskStore: пакетная загрузка задач, одиночные изменения
+// и удаления в случайном порядке, затем чтение при перезапуске.
+// Запуск: java TaskStoreBenchmark [число задач] [число изменений]; печатает микросекунды на операцию
+public class TaskStoreBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int updates = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        Path dir = Files.createTempDirectory("task-store-benchmark");
+        run("csv", dir.resolve("tasks.csv"), CsvTaskStore::new, count, Math.min(updates, 50));
+        run("log", dir.resolve("tasks.log"), LogTaskStore::new, count, updates);
+        run("btree", dir.resolve("tasks.btree"), BTreeTaskStore::new, count, updates);
+    }
+
+    private static void run(String name, Path path, Function<Path, TaskStore> stores, int count, int updates)
+            throws IOException {
+        TaskStore store = stores.apply(path);
+        TaskManager manager = Managers.getStoreBacked(store);
+        List<Task> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tasks.add(new Task("Задача " + i, "Описание задачи " + i, TaskStatus.NEW));
+        }
+        long start = System.nanoTime();
+        manager.addTasks(tasks);
+        long batchTime = System.nanoTime() - start;
+
+        Random random = new Random(42);
+        start = System.nanoTime();
+        for (int i = 0; i < updates; i++) {
+            int id = tasks.get(random.nextInt(count)).getId();
+            manager.updateTask(new Task("Задача " + id, "Новое описание " + i, TaskStatus.IN_PROGRESS), id);
+        }
+        long updateTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < updates; i++) {
+            manager.removeTask(tasks.get(random.nextInt(count)).getId());
+        }
+        long removeTime = System.nanoTime() - start;
+        store.close();
+
+        start = System.nanoTime();
+        TaskStore reopened = stores.apply(path);
+        int loaded = Managers.getStoreBacked(reopened).getTasksList().size();
+        long loadTime = System.nanoTime() - start;
+        reopened.close();
+
+        System.out.printf("%-6s пакет %7.1f мс, изменение %9.1f мкс, удаление %9.1f мкс, загрузка %7.1f мс, "
+                        + "файл %6d КБ (%d задач)%n", name, batchTime / 1e6, updateTime / 1e3 / updates,
+                removeTime / 1e3 / updates, loadTime / 1e6, Files.size(path) / 1024, loaded);
+    }
+}
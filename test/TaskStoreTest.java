@@ -0,0 +1,245 @@
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import enums.TaskStatus;
+import exceptions.OverlapException;
+import json.LocalDateAdapter;
+import json.TaskTextAdapterFactory;
+import managers.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tasks.Epic;
+import tasks.SubTask;
+import tasks.Task;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+
+public class TaskStoreTest {
+
+    private Path tempDir;
+
+    @BeforeEach
+    public void setTempDir(@TempDir Path tempDir) {
+        this.tempDir = tempDir;
+    }
+
+    @Test
+    public void csvStoreKeepsChangesAcrossRestart() {
+        Path path = tempDir.resolve("tasks.csv");
+        checkRestart(() -> new CsvTaskStore(path));
+    }
+
+    @Test
+    public void logStoreKeepsChangesAcrossRestart() {
+        Path path = tempDir.resolve("tasks.log");
+        checkRestart(() -> new LogTaskStore(path));
+    }
+
+    @Test
+    public void btreeStoreKeepsChangesAcrossRestart() {
+        Path path = tempDir.resolve("tasks.btree");
+        checkRestart(() -> new BTreeTaskStore(path));
+    }
+
+    @Test
+    public void csvStoreFileIsReadByFileBackedTaskManager() {
+        Path path = tempDir.resolve("tasks.csv");
+        CsvTaskStore store = new CsvTaskStore(path);
+        TaskManager manager = Managers.getStoreBacked(store);
+        manager.addTask(new Task("Задача", "Описание", TaskStatus.NEW));
+        store.close();
+
+        FileBackedTaskManager fileBacked = FileBackedTaskManager.loadFromFile(path.toFile());
+
+        Assertions.assertEquals(manager.getTasksList().toString(), fileBacked.getTasksList().toString());
+    }
+
+    @Test
+    public void logStoreCompactsStaleRecords() throws IOException {
+        Path path = tempDir.resolve("tasks.log");
+        LogTaskStore store = new LogTaskStore(path);
+        store.setCompactionThreshold(100);
+        TaskManager manager = Managers.getStoreBacked(store);
+        manager.addTask(new Task("Задача", "Описание", TaskStatus.NEW));
+        int id = manager.getTasksList().getFirst().getId();
+        for (int i = 0; i < 250; i++) {
+            manager.updateTask(new Task("Задача " + i, "Описание", TaskStatus.IN_PROGRESS), id);
+        }
+        store.close();
+
+        Assertions.assertTrue(Files.readAllLines(path).size() < 100, "Журнал не сжат");
+        LogTaskStore reopened = new LogTaskStore(path);
+        TaskManager reloaded = Managers.getStoreBacked(reopened);
+        Assertions.assertEquals("Задача 249", reloaded.getTask(id).orElseThrow().getTaskName());
+        reopened.close();
+    }
+
+    @Test
+    public void btreeStoreSplitsAndFreesPages() throws IOException {
+        Path path = tempDir.resolve("tasks.btree");
+        BTreeTaskStore store = new BTreeTaskStore(path, 4);
+        TaskManager manager = Managers.getStoreBacked(store);
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            String description = i % 100 == 0 ? "Длинное описание ".repeat(500) : "Описание " + i;
+            tasks.add(new Task("Задача " + i, description, TaskStatus.NEW));
+        }
+        manager.addTasks(tasks);
+        for (int i = 0; i < tasks.size(); i += 2) {
+            manager.removeTask(tasks.get(i).getId());
+        }
+        store.close();
+
+        BTreeTaskStore reopened = new BTreeTaskStore(path, 4);
+        TaskManager reloaded = Managers.getStoreBacked(reopened);
+        Assertions.assertEquals(byId(manager.getTasksList()), byId(reloaded.getTasksList()));
+        long size = Files.size(path);
+
+        reloaded.removeAllTasks();
+        reloaded.addTasks(tasks.subList(0, 2500).stream().map(Task::new).toList());
+        reopened.close();
+
+        Assertions.assertTrue(Files.size(path) <= size, "Освобожденные страницы не переиспользованы");
+        BTreeTaskStore last = new BTreeTaskStore(path);
+        Assertions.assertEquals(2500, Managers.getStoreBacked(last).getTasksList().size());
+        last.close();
+    }
+
+    @Test
+    public void btreeDetachedTextIsReadThroughCache() {
+        Path path = tempDir.resolve("tasks.btree");
+        checkDetachedText(() -> new BTreeTaskStore(path));
+    }
+
+    @Test
+    public void logDetachedTextIsReadThroughCache() {
+        Path path = tempDir.resolve("tasks.log");
+        checkDetachedText(() -> {
+            LogTaskStore store = new LogTaskStore(path);
+            store.setCompactionThreshold(25); // смещения строк пересчитываются при сжатии
+            return store;
+        });
+    }
+
+    @Test
+    public void removedTaskKeepsItsText() {
+        CsvTaskStore store = new CsvTaskStore(tempDir.resolve("tasks.csv"));
+        TaskManager manager = new InMemoryTaskManager(store, 10);
+        Task task = new Task("Задача", "Описание", TaskStatus.NEW);
+        manager.addTask(task);
+        Task held = manager.getTask(task.getId()).orElseThrow();
+
+        manager.removeTask(task.getId());
+
+        Assertions.assertEquals("Задача", held.getTaskName(), "Текст удаленной задачи не читается");
+        Assertions.assertEquals("Описание", held.getTaskDescription());
+        store.close();
+    }
+
+    @Test
+    public void oldVersionKeepsItsTextAfterUpdate() {
+        CsvTaskStore store = new CsvTaskStore(tempDir.resolve("tasks.csv"));
+        TaskManager manager = new InMemoryTaskManager(store, 10);
+        Task task = new Task("Задача", "Описание", TaskStatus.NEW);
+        manager.addTask(task);
+        Task held = manager.getTask(task.getId()).orElseThrow();
+
+        manager.updateTask(new Task("Новое название", "Новое описание", TaskStatus.DONE), task.getId());
+        manager.updateTasks(List.of(withId(new Task("Еще название", "", TaskStatus.DONE), task.getId())));
+
+        Assertions.assertEquals("Задача", held.getTaskName(), "Прежняя версия читает текст новой");
+        Assertions.assertEquals("Описание", held.getTaskDescription());
+        Assertions.assertEquals("Еще название", manager.getTask(task.getId()).orElseThrow().getTaskName());
+        store.close();
+    }
+
+    private static Task withId(Task task, int id) {
+        task.setId(id);
+        return task;
+    }
+
+    // названия и описания читаются из хранилища и после вытеснения из кэша, и после перезапуска
+    private void checkDetachedText(Supplier<TaskStore> stores) {
+        TaskStore store = stores.get();
+        TaskManager manager = Managers.getStoreBacked(store, 2);
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            tasks.add(new Task("Задача " + i, "Описание ".repeat(200) + i, TaskStatus.NEW,
+                    LocalDateTime.of(2025, 4, 1, 0, 0).plusHours(i), 30));
+        }
+        manager.addTasks(tasks);
+        Task updated = tasks.get(7);
+        for (int i = 0; i < 25; i++) {
+            manager.updateTask(new Task("Новое название", "Новое описание " + i, TaskStatus.DONE), updated.getId());
+        }
+        manager.removeTask(tasks.get(11).getId());
+
+        Task stored = manager.getTask(tasks.get(3).getId()).orElseThrow();
+        Assertions.assertTrue(stored.isTextDetached(), "Текст задачи остался в памяти");
+        Assertions.assertEquals("Задача 3", stored.getTaskName());
+        Assertions.assertEquals("Описание ".repeat(200) + 3, stored.getTaskDescription());
+        Assertions.assertEquals("Новое название", manager.getTask(updated.getId()).orElseThrow().getTaskName());
+        Assertions.assertEquals(18, manager.getPrioritizedTasks().size());
+        Assertions.assertThrows(OverlapException.class, () -> manager.addTask(new Task("Пересечение", "",
+                TaskStatus.NEW, LocalDateTime.of(2025, 4, 1, 0, 10), 10)));
+        Gson gson = new GsonBuilder()
+                .registerTypeAdapter(LocalDateTime.class, new LocalDateAdapter())
+                .registerTypeAdapterFactory(new TaskTextAdapterFactory())
+                .create();
+        Assertions.assertEquals("Задача 3", gson.fromJson(gson.toJson(stored), Task.class).getTaskName());
+        List<String> expected = byId(manager.getTasksList());
+        store.close();
+
+        TaskStore reopened = stores.get();
+        TaskManager reloaded = Managers.getStoreBacked(reopened, 2);
+        Assertions.assertEquals(expected, byId(reloaded.getTasksList()));
+        Assertions.assertTrue(reloaded.getTask(updated.getId()).orElseThrow().isTextDetached());
+        reopened.close();
+    }
+
+    // одинаковый сценарий для всех хранилищ: изменения переживают перезапуск, id не выдаются повторно
+    private void checkRestart(Supplier<TaskStore> stores) {
+        TaskStore store = stores.get();
+        TaskManager manager = Managers.getStoreBacked(store);
+        Task task = new Task("Задача", "Описание", TaskStatus.NEW, LocalDateTime.of(2025, 3, 1, 10, 0), 30);
+        Task removed = new Task("Удаляемая", "Описание", TaskStatus.NEW);
+        Epic epic = new Epic("Эпик", "Описание эпика");
+        manager.addTask(task);
+        manager.addTask(removed);
+        manager.addEpic(epic);
+        SubTask subTask = new SubTask("Подзадача", "с, запятой", TaskStatus.DONE,
+                LocalDateTime.of(2025, 3, 2, 10, 0), 90);
+        manager.addSubTask(subTask, epic.getId());
+        manager.updateTask(new Task("Измененная", "Описание", TaskStatus.IN_PROGRESS), task.getId());
+        manager.removeTask(removed.getId());
+        store.close();
+
+        TaskStore reopened = stores.get();
+        TaskManager reloaded = Managers.getStoreBacked(reopened);
+
+        Assertions.assertEquals(byId(manager.getTasksList()), byId(reloaded.getTasksList()));
+        Assertions.assertEquals(byId(manager.getEpicsList()), byId(reloaded.getEpicsList()));
+        Assertions.assertEquals(byId(manager.getSubTasksList()), byId(reloaded.getSubTasksList()));
+        Assertions.assertEquals(List.of(subTask.getId()), reloaded.getEpic(epic.getId()).orElseThrow().getSubTasksIds());
+        Task added = new Task("Новая", "Описание", TaskStatus.NEW);
+        reloaded.addTask(added);
+        Assertions.assertTrue(added.getId() > subTask.getId(), "id выдан повторно после перезапуска");
+        reopened.close();
+    }
+
+    // порядок списков менеджера зависит от истории хеш-таблицы, поэтому сравнение идет по id
+    private static List<String> byId(List<? extends Task> tasks) {
+        return tasks.stream()
+                .sorted(Comparator.comparingInt(Task::getId))
+                .map(Task::toString)
+                .toList();
+    }
+}
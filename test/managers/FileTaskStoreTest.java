@@ -0,0 +1,43 @@
+package managers;
+
+import enums.SaveMode;
+import enums.SyncMode;
+import enums.TaskStatus;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tasks.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class FileTaskStoreTest {
+
+    @Test
+    public void snapshotLoadDoesNotEncodeRecords(@TempDir Path tempDir) throws IOException {
+        File file = tempDir.resolve("tasks.csv").toFile();
+        Files.createFile(file.toPath());
+        FileBackedTaskManager manager = new FileBackedTaskManager(file.getPath());
+        manager.addTask(new Task("Задача 1", "Описание", TaskStatus.NEW));
+        manager.addTask(new Task("Задача 2", "Описание", TaskStatus.DONE));
+        manager.close();
+
+        FileTaskStore snapshot = new FileTaskStore(file, SaveMode.SNAPSHOT, SyncMode.OS_BUFFERED, false);
+        List<Task> loaded = new ArrayList<>();
+        snapshot.load(loaded::add);
+        Assertions.assertEquals(2, loaded.size());
+        Assertions.assertEquals(0, snapshot.recordCount(), "Записи снимка закодированы при загрузке в режиме SNAPSHOT");
+        Assertions.assertEquals("Задача 2", snapshot.find(loaded.get(1).getId()).orElseThrow().getTaskName());
+        snapshot.close();
+
+        FileTaskStore journal = new FileTaskStore(file, SaveMode.JOURNAL, SyncMode.OS_BUFFERED, false);
+        journal.load(task -> {
+        });
+        Assertions.assertEquals(2, journal.recordCount(), "Журналу нужны закодированные записи для сжатия");
+        journal.close();
+    }
+}